@@ -41,6 +41,7 @@ import gyro.core.validation.ValidationErrorException;
 import gyro.lang.Locatable;
 import gyro.lang.SyntaxError;
 import gyro.lang.SyntaxErrorException;
+import gyro.lang.SyntaxErrorsException;
 import gyro.util.Bug;
 import io.airlift.airline.Cli;
 import io.airlift.airline.Command;
@@ -120,6 +121,17 @@ public class Gyro {
                 GyroCore.ui().write("%s", e.toCodeSnippet());
             }
 
+        } else if (error instanceof SyntaxErrorsException) {
+            List<SyntaxErrorException> exceptions = ((SyntaxErrorsException) error).getExceptions();
+
+            for (int i = 0, size = exceptions.size(); i < size; ++i) {
+                if (i > 0) {
+                    GyroCore.ui().write("\n");
+                }
+
+                writeError(exceptions.get(i));
+            }
+
         } else if (error instanceof ValidationErrorException) {
             ((ValidationErrorException) error).write(GyroCore.ui());
 
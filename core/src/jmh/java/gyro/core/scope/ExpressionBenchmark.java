@@ -0,0 +1,100 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableMap;
+import gyro.lang.ast.Node;
+import gyro.parser.antlr4.GyroParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Re-evaluates the same expressions repeatedly, like DiffableInternals.reevaluate does during diff, through the
+// visitor alone and through the compiled closures.
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExpressionBenchmark {
+
+    private static final List<String> EXPRESSIONS = Arrays.asList(
+        "$(count) * 2 + 1",
+        "$(count) >= 10 and $(name) != 'test'",
+        "\"prefix-$(name)-$(count)-suffix\"",
+        "[$(name), $(count), 'literal', $(count) % 3]",
+        "{ name: $(name), next: $(count) + 1, tags: [$(name), 'other'] }",
+        "$(items).1",
+        "$(settings).region");
+
+    private List<Node> nodes;
+    private Scope interpretedScope;
+    private Scope compiledScope;
+    private NodeEvaluator interpreter;
+    private NodeEvaluator compiler;
+
+    @Setup
+    public void setup() {
+        nodes = EXPRESSIONS.stream()
+            .map(e -> Node.parse(e, GyroParser::value))
+            .collect(Collectors.toList());
+
+        interpreter = new NodeEvaluator(false);
+        interpretedScope = createScope();
+        compiler = new NodeEvaluator();
+        compiledScope = createScope();
+    }
+
+    private Scope createScope() {
+        Scope scope = new Scope(new RootScope("", null, null, null));
+
+        scope.put("count", 42L);
+        scope.put("name", "benchmark");
+        scope.put("items", Arrays.asList("foo", "bar", "qux"));
+        scope.put("settings", ImmutableMap.of("region", "us-east-1"));
+
+        return scope;
+    }
+
+    @Benchmark
+    public void interpreted(Blackhole blackhole) {
+        for (Node node : nodes) {
+            blackhole.consume(interpreter.visit(node, interpretedScope));
+        }
+    }
+
+    @Benchmark
+    public void compiled(Blackhole blackhole) {
+        for (Node node : nodes) {
+            blackhole.consume(compiler.visit(node, compiledScope));
+        }
+    }
+
+}
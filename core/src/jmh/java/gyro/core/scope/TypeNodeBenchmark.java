@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import gyro.lang.ast.Node;
+import gyro.lang.ast.PairNode;
+import gyro.lang.ast.block.ResourceNode;
+import gyro.lang.ast.value.ReferenceNode;
+import gyro.lang.ast.value.ValueNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Registers top-level nodes for wildcard deferral the same way NodeEvaluator.evaluate does, then visits all of them
+// along with the value nodes inside, checking a wildcard reference periodically. The checks cycle through the wildcards
+// for all the types.
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TypeNodeBenchmark {
+
+    @Param("200")
+    public int types;
+
+    @Param("20000")
+    public int nodes;
+
+    private RootScope root;
+    private List<PairNode> tops;
+    private List<ResourceNode> resources;
+    private List<ReferenceNode> wildcards;
+
+    @Setup
+    public void setup() {
+        root = new RootScope("", null, null, null);
+        tops = new ArrayList<>();
+        resources = new ArrayList<>();
+        wildcards = new ArrayList<>();
+
+        for (int i = 0; i < types; i++) {
+            String type = "benchmark::type-" + i;
+
+            resources.add(new ResourceNode(type, new ValueNode("resource"), Collections.emptyList()));
+
+            wildcards.add(new ReferenceNode(
+                Arrays.<Node>asList(new ValueNode(type), new ValueNode("*")),
+                Collections.emptyList()));
+        }
+
+        for (int i = 0; i < nodes; i++) {
+            tops.add(new PairNode(new ValueNode("key-" + i), new ValueNode("value-" + i)));
+        }
+    }
+
+    @Benchmark
+    public void registerAndVisit(Blackhole blackhole) {
+        NodeEvaluator evaluator = root.getEvaluator();
+        Scope scope = new Scope(root);
+
+        evaluator.evaluate(root, Collections.emptyList());
+
+        for (int i = 0, size = tops.size(); i < size; i++) {
+            evaluator.addTypeNode(tops.get(i), resources.get(i % types));
+        }
+
+        for (int i = 0, size = tops.size(); i < size; i++) {
+            blackhole.consume(evaluator.visit(tops.get(i), scope));
+
+            if (i % 100 == 0) {
+                try {
+                    blackhole.consume(evaluator.visit(wildcards.get((i / 100) % types), scope));
+
+                } catch (Defer error) {
+                    blackhole.consume(error);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Collects everything written to it so that the output of work done on another thread can be replayed onto the
+ * target in a deterministic order. Reading from the user is passed through to the target after writing out what's
+ * been collected so far, so that the prompts come after the output that led to them.
+ */
+public class BufferedGyroUI implements GyroUI {
+
+    private final GyroUI target;
+    private final List<Consumer<GyroUI>> operations = new ArrayList<>();
+    private Boolean verbose;
+
+    /**
+     * @param target Nonnull.
+     */
+    public BufferedGyroUI(GyroUI target) {
+        this.target = Preconditions.checkNotNull(target);
+    }
+
+    public GyroUI getTarget() {
+        return target;
+    }
+
+    public void replay() {
+        synchronized (target) {
+            operations.forEach(o -> o.accept(target));
+        }
+
+        operations.clear();
+    }
+
+    @Override
+    public boolean isVerbose() {
+        return verbose != null ? verbose : target.isVerbose();
+    }
+
+    // Takes effect here right away but only on the target when replayed, in the same order as the output around it.
+    @Override
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+
+        operations.add(t -> t.setVerbose(verbose));
+    }
+
+    @Override
+    public boolean readBoolean(Boolean defaultValue, String message, Object... arguments) {
+        synchronized (target) {
+            replay();
+            return target.readBoolean(defaultValue, message, arguments);
+        }
+    }
+
+    @Override
+    public void readEnter(String message, Object... arguments) {
+        synchronized (target) {
+            replay();
+            target.readEnter(message, arguments);
+        }
+    }
+
+    @Override
+    public <E extends Enum<E>> E readNamedOption(E options) {
+        synchronized (target) {
+            replay();
+            return target.readNamedOption(options);
+        }
+    }
+
+    @Override
+    public String readPassword(String message, Object... arguments) {
+        synchronized (target) {
+            replay();
+            return target.readPassword(message, arguments);
+        }
+    }
+
+    @Override
+    public String readText(String message, Object... arguments) {
+        synchronized (target) {
+            replay();
+            return target.readText(message, arguments);
+        }
+    }
+
+    @Override
+    public void indent() {
+        operations.add(GyroUI::indent);
+    }
+
+    @Override
+    public void unindent() {
+        operations.add(GyroUI::unindent);
+    }
+
+    @Override
+    public void write(String message, Object... arguments) {
+        Object[] copy = arguments != null ? arguments.clone() : null;
+
+        operations.add(t -> t.write(message, copy));
+    }
+
+    @Override
+    public void replace(String message, Object... arguments) {
+        Object[] copy = arguments != null ? arguments.clone() : null;
+
+        operations.add(t -> t.replace(message, copy));
+    }
+
+}
@@ -18,8 +18,10 @@ package gyro.core;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.stream.Stream;
 
+import com.google.common.io.ByteStreams;
 import gyro.core.scope.RootScope;
 
 public abstract class FileBackend {
@@ -47,6 +49,19 @@ public abstract class FileBackend {
 
     public abstract InputStream openInput(String file) throws Exception;
 
+    /**
+     * Reads the entire content of the given {@code file} at once.
+     *
+     * <p>Backends that can read the content more efficiently, e.g. straight into a buffer of the right size, should
+     * override this. The buffer may be kept for as long as the parsed file, so it shouldn't hold on to the file
+     * itself, e.g. through a memory mapping.</p>
+     */
+    public ByteBuffer readBuffer(String file) throws Exception {
+        try (InputStream input = openInput(file)) {
+            return ByteBuffer.wrap(ByteStreams.toByteArray(input));
+        }
+    }
+
     public abstract OutputStream openOutput(String file) throws Exception;
 
     public abstract void delete(String file) throws Exception;
@@ -21,9 +21,12 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.stream.Stream;
 
 public class LocalFileBackend extends FileBackend {
@@ -52,6 +55,26 @@ public class LocalFileBackend extends FileBackend {
         return Files.newInputStream(rootDirectory.resolve(file).normalize());
     }
 
+    // Reads straight into a buffer of the right size, which is only used while the file is hashed and parsed, so
+    // even the largest state files are only on the heap one at a time per parsing thread. The files aren't mapped
+    // into memory even though that'd skip the copy, since a mapping is only released once the buffer is garbage
+    // collected, and there's no supported way to release it earlier. Until then, it'd keep e.g. the state files from
+    // being replaced on Windows when the state is saved.
+    @Override
+    public ByteBuffer readBuffer(String file) throws IOException {
+        try (FileChannel channel = FileChannel.open(rootDirectory.resolve(file).normalize(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the buffer is full.
+            }
+
+            buffer.flip();
+            return buffer;
+        }
+    }
+
     @Override
     public OutputStream openOutput(String file) throws IOException {
         Path finalFile = rootDirectory.resolve(file);
@@ -20,9 +20,12 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -42,9 +45,11 @@ import gyro.core.auth.CredentialsSettings;
 import gyro.core.resource.DiffableInternals;
 import gyro.core.resource.DiffableType;
 import gyro.core.resource.Resource;
+import gyro.core.scope.FileNodeCache;
 import gyro.core.scope.FileScope;
 import gyro.core.scope.RootScope;
 import gyro.core.scope.State;
+import gyro.lang.ast.Node;
 import io.airlift.airline.Arguments;
 import io.airlift.airline.Option;
 
@@ -56,6 +61,9 @@ public abstract class AbstractConfigCommand extends AbstractCommand {
     @Option(name = "--test")
     private boolean test;
 
+    @Option(name = "--defer-report")
+    private boolean deferReport;
+
     @Arguments
     private List<String> files;
 
@@ -109,9 +117,8 @@ public abstract class AbstractConfigCommand extends AbstractCommand {
             "../../" + GyroCore.INIT_FILE,
             new LocalFileBackend(rootDir.resolve(".gyro/state")),
             null,
-            loadFiles);
-
-        current.evaluate();
+            loadFiles,
+            new FileNodeCache(rootDir.resolve(".gyro/cache")));
 
         RootScope pending = new RootScope(
             GyroCore.INIT_FILE,
@@ -119,20 +126,100 @@ public abstract class AbstractConfigCommand extends AbstractCommand {
             current,
             loadFiles);
 
-        if (!test) {
-            current.getSettings(CredentialsSettings.class)
-                .getCredentialsByName()
-                .values()
-                .forEach(Credentials::refresh);
+        if (deferReport) {
+            current.getEvaluator().recordDeferrals();
+            pending.getEvaluator().recordDeferrals();
+        }
+
+        // A workflow makes both roots evaluate again, and most of what they evaluated before can be reused then.
+        // Recording the lookups is cheap, and the copies are only made if the pending root defines any workflows.
+        current.keepEvaluation();
+        pending.keepEvaluation();
+
+        RootScope saved = current;
+
+        try {
+            current.evaluate();
 
-            if (!skipRefresh) {
-                refreshResources(current);
+            if (!test) {
+                current.getSettings(CredentialsSettings.class)
+                    .getCredentialsByName()
+                    .values()
+                    .forEach(Credentials::refresh);
+
+                if (!skipRefresh) {
+
+                    // The state starts from the resources as they were saved, before they're refreshed.
+                    saved = current.snapshot();
+                    refreshResources(current);
+                }
+            }
+
+            pending.evaluate();
+
+        } finally {
+            if (deferReport) {
+                writeDeferReport(current, pending);
             }
         }
 
-        pending.evaluate();
+        // The current root hasn't changed since it was saved, but whether it needs a copy is only known now.
+        if (pending.isEvaluationKept()) {
+            current.keepEvaluation(saved.snapshot());
+        }
+
         pending.validate();
-        doExecute(current, pending, new State(current, pending, test));
+
+        // The saved root is only shared with the current one if it wasn't refreshed, and needs a copy then.
+        doExecute(current, pending, new State(saved, pending, test, saved == current));
+    }
+
+    static void writeDeferReport(RootScope... roots) {
+        GyroUI ui = GyroCore.ui();
+        Map<String, List<Map.Entry<Node, Integer>>> deferralsByFile = new HashMap<>();
+
+        for (RootScope root : roots) {
+            for (Map.Entry<Node, Integer> entry : root.getEvaluator().getDeferrals().entrySet()) {
+                deferralsByFile.computeIfAbsent(entry.getKey().getFile(), f -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        if (deferralsByFile.isEmpty()) {
+            ui.write("@|magenta ⧗ Deferral report:|@ nothing was deferred\n");
+            return;
+        }
+
+        ui.write("@|magenta ⧗ Deferral report:|@\n");
+
+        // Files that took the most passes first, and within each file, nodes in source order.
+        deferralsByFile.entrySet()
+            .stream()
+            .sorted(Comparator.comparing(
+                (Map.Entry<String, List<Map.Entry<Node, Integer>>> e) -> e.getValue()
+                    .stream()
+                    .mapToInt(Map.Entry::getValue)
+                    .sum())
+                .reversed()
+                .thenComparing(Map.Entry::getKey))
+            .forEach(e -> {
+                List<Map.Entry<Node, Integer>> deferrals = e.getValue();
+
+                ui.write("\n@|bold %s|@\n", e.getKey());
+                deferrals.sort(Comparator.comparing(d -> d.getKey().getStartLine()));
+
+                ui.indented(() -> {
+                    for (Map.Entry<Node, Integer> deferral : deferrals) {
+                        Node node = deferral.getKey();
+                        int passes = deferral.getValue();
+
+                        ui.write(
+                            "@|bold %s|@ %s %s\n",
+                            passes,
+                            passes == 1 ? "pass" : "passes",
+                            Optional.ofNullable(node.toLocation()).orElse("at unknown location"));
+                    }
+                });
+            });
     }
 
     private void refreshResources(RootScope scope) {
@@ -168,6 +255,7 @@ public abstract class AbstractConfigCommand extends AbstractCommand {
 
                     if (keep) {
                         DiffableInternals.update(resource, true);
+                        DiffableInternals.updateFingerprint(resource);
                         return false;
 
                     } else {
@@ -203,6 +291,9 @@ public abstract class AbstractConfigCommand extends AbstractCommand {
             }
         }
 
+        // Refreshing can change the resource IDs.
+        scope.getFileScopes().forEach(FileScope::invalidateResources);
+
         messageService.shutdown();
         ui.replace("@|magenta ⟳ Refreshed resources:|@ %s\n", refreshes.size());
     }
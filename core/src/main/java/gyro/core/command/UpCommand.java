@@ -58,9 +58,19 @@ public class UpCommand extends AbstractConfigCommand {
             } catch (Retry error) {
                 ui.write("\n@|bold,white Relooking for changes after workflow...\n\n|@");
 
-                current = new RootScope(current.getFile(), current.getBackend(), null, current.getLoadFiles());
+                // Only the files that the workflow changed, and the ones that depend on them, are evaluated again.
+                RootScope previousCurrent = current;
+                RootScope previousPending = pending;
 
-                current.evaluate();
+                current = new RootScope(
+                    current.getFile(),
+                    current.getBackend(),
+                    null,
+                    current.getLoadFiles(),
+                    current.getFileNodeCache());
+
+                current.keepEvaluation();
+                current.evaluate(previousCurrent);
 
                 pending = new RootScope(
                     pending.getFile(),
@@ -68,9 +78,14 @@ public class UpCommand extends AbstractConfigCommand {
                     current,
                     pending.getLoadFiles());
 
-                pending.evaluate();
+                pending.keepEvaluation();
+                pending.evaluate(previousPending);
                 pending.validate();
 
+                if (pending.isEvaluationKept()) {
+                    current.keepEvaluation(current.snapshot());
+                }
+
                 state = new State(current, pending, state.isTest());
             }
         }
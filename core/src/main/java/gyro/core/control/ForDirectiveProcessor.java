@@ -16,17 +16,28 @@
 
 package gyro.core.control;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
+import gyro.core.BufferedGyroUI;
+import gyro.core.GyroCore;
 import gyro.core.GyroException;
+import gyro.core.GyroUI;
 import gyro.core.Type;
 import gyro.core.directive.DirectiveProcessor;
+import gyro.core.scope.Defer;
+import gyro.core.scope.FileScope;
 import gyro.core.scope.Scope;
 import gyro.lang.ast.Node;
 import gyro.lang.ast.block.DirectiveNode;
-import gyro.util.CascadingMap;
+import gyro.lang.ast.block.ResourceNode;
+import gyro.util.LayeredMap;
 
 @Type("for")
 public class ForDirectiveProcessor extends DirectiveProcessor<Scope> {
@@ -34,16 +45,22 @@ public class ForDirectiveProcessor extends DirectiveProcessor<Scope> {
     @Override
     public void process(Scope scope, DirectiveNode node) {
         validateArguments(node, 1, 0);
+        validateOptionArguments(node, "parallel", 0, 1);
 
         List<String> variables = getArguments(scope, node, String.class);
         List<Node> inArguments = validateOptionArguments(node, "in", 1, 1);
         Node inNode = inArguments.get(0);
         Object in = scope.getRootScope().getEvaluator().visit(inNode, scope);
 
+        boolean parallel = Optional.ofNullable(getOptionArgument(scope, node, "parallel", Boolean.class, 0))
+            .orElse(false);
+
         if (in == null) {
             return;
         }
 
+        List<Map<String, Object>> iterations = new ArrayList<>();
+
         if (in instanceof List) {
             List<?> list = (List<?>) in;
             int variablesSize = variables.size();
@@ -62,7 +79,7 @@ public class ForDirectiveProcessor extends DirectiveProcessor<Scope> {
                             : null);
                 }
 
-                processBody(node, scope, values);
+                iterations.add(values);
             }
 
         } else if (in instanceof Map) {
@@ -76,7 +93,7 @@ public class ForDirectiveProcessor extends DirectiveProcessor<Scope> {
 
                     values.put(keyVariable, entry.getKey());
                     values.put(valueVariable, entry.getValue());
-                    processBody(node, scope, values);
+                    iterations.add(values);
                 }
 
             } else {
@@ -84,7 +101,7 @@ public class ForDirectiveProcessor extends DirectiveProcessor<Scope> {
                     Map<String, Object> values = new LinkedHashMap<>();
 
                     values.put(keyVariable, entry.getKey());
-                    processBody(node, scope, values);
+                    iterations.add(values);
                 }
             }
 
@@ -94,12 +111,171 @@ public class ForDirectiveProcessor extends DirectiveProcessor<Scope> {
                 inNode,
                 in));
         }
+
+        if (parallel && iterations.size() > 1) {
+            processParallel(node, scope, iterations);
+
+        } else {
+            iterations.forEach(values -> processBody(node, scope, values));
+        }
     }
 
     private void processBody(DirectiveNode node, Scope scope, Map<String, Object> values) {
         scope.getRootScope().getEvaluator().evaluateBody(
             node.getBody(),
-            new Scope(scope, new CascadingMap<>(scope, values)));
+            new Scope(scope, new LayeredMap<>(scope, values)));
+    }
+
+    // Each iteration writes to its own locals and file scope so that they can run at the same time, and the results
+    // are merged back in iteration order so that they're the same as if they were evaluated one after another. The
+    // iteration scopes are then moved under the enclosing scope so that the merged resources belong to its file.
+    // Iterations that need something that isn't available yet, e.g. a resource created by an earlier iteration, are
+    // evaluated again in place once everything before them has been merged.
+    private void processParallel(DirectiveNode node, Scope scope, List<Map<String, Object>> iterations) {
+        FileScope file = scope.getFileScope();
+        List<Scope> ancestors = new ArrayList<>();
+
+        for (Scope s = scope; s != file; ) {
+            if (s.getClass() != Scope.class) {
+                throw new GyroException(node, String.format(
+                    "Can't use the @|bold -parallel|@ option inside @|bold %s|@!",
+                    s.getClass().getName()));
+            }
+
+            s = s.getParent();
+
+            ancestors.add(s);
+        }
+
+        GyroUI ui = GyroCore.ui();
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+        List<Iteration> tasks = iterations.stream()
+            .map(values -> new Iteration(node, scope, ancestors, values, ui, classLoader))
+            .collect(Collectors.toList());
+
+        ForkJoinPool pool = new ForkJoinPool(Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()));
+
+        try {
+            pool.invokeAll(tasks);
+
+        } finally {
+            pool.shutdown();
+        }
+
+        for (Iteration task : tasks) {
+            Throwable error = task.error;
+
+            if (error instanceof Defer) {
+                processBody(node, scope, task.values);
+                continue;
+            }
+
+            if (task.ui != null) {
+                task.ui.replay();
+            }
+
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+
+            } else if (error != null) {
+                throw (Error) error;
+            }
+
+            task.merge(scope, file);
+        }
+    }
+
+    private static class Iteration implements Callable<Void> {
+
+        private final DirectiveNode node;
+        private final Map<String, Object> values;
+        private final Map<String, Object> locals = new LinkedHashMap<>();
+        private final FileScope file;
+        private final Scope scope;
+        private final BufferedGyroUI ui;
+        private final ClassLoader classLoader;
+        private Throwable error;
+
+        @SuppressWarnings("unchecked")
+        public Iteration(
+            DirectiveNode node,
+            Scope parent,
+            List<Scope> ancestors,
+            Map<String, Object> values,
+            GyroUI ui,
+            ClassLoader classLoader) {
+            FileScope parentFile = parent.getFileScope();
+            List<Map<String, Object>> layers = new ArrayList<>();
+
+            layers.add(locals);
+            layers.add(parent);
+            layers.add(values);
+            layers.addAll(ancestors);
+
+            this.node = node;
+            this.values = values;
+            this.file = new FileScope(parent.getRootScope(), parentFile.getFile());
+            this.scope = new Scope(file, new LayeredMap<>(layers.toArray(new Map[0])));
+            this.ui = ui != null ? new BufferedGyroUI(ui) : null;
+            this.classLoader = classLoader;
+
+            file.putAllSettings(parentFile);
+        }
+
+        @Override
+        public Void call() {
+            Thread thread = Thread.currentThread();
+            ClassLoader oldClassLoader = thread.getContextClassLoader();
+
+            thread.setContextClassLoader(classLoader);
+            GyroCore.pushUi(ui);
+
+            try {
+                scope.getRootScope().getEvaluator().evaluateBody(node.getBody(), scope);
+
+            } catch (RuntimeException | Error e) {
+                error = e;
+
+            } finally {
+                GyroCore.popUi();
+                thread.setContextClassLoader(oldClassLoader);
+            }
+
+            return null;
+        }
+
+        public void merge(Scope parent, FileScope parentFile) {
+            parent.putAll(locals);
+
+            for (Map.Entry<String, Object> entry : file.entrySet()) {
+                String key = entry.getKey();
+                Node location = file.getLocation(key);
+
+                if (location instanceof ResourceNode && parentFile.containsKey(key)) {
+                    Node previous = parentFile.getLocation(key);
+
+                    if (!location.equals(previous)) {
+                        String type = ((ResourceNode) location).getType();
+                        String name = key.substring(type.length() + 2);
+
+                        throw new GyroException(
+                            location,
+                            String.format("@|bold %s %s|@ has been defined already!", type, name),
+                            new GyroException(previous, "Defined previously:"));
+                    }
+                }
+
+                parentFile.put(key, entry.getValue());
+
+                if (location != null) {
+                    parentFile.putLocation(key, location);
+                }
+            }
+
+            parentFile.adopt(scope, parent);
+        }
+
     }
 
 }
@@ -26,8 +26,13 @@ import java.util.ListIterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
 
+import gyro.core.BufferedGyroUI;
+import gyro.core.GyroCore;
 import gyro.core.GyroException;
 import gyro.core.GyroUI;
 import gyro.core.resource.Diffable;
@@ -35,6 +40,7 @@ import gyro.core.resource.DiffableField;
 import gyro.core.resource.DiffableInternals;
 import gyro.core.resource.DiffableType;
 import gyro.core.resource.Resource;
+import gyro.core.scope.FileScope;
 import gyro.core.scope.Scope;
 import gyro.core.scope.State;
 
@@ -44,6 +50,10 @@ public class Diff {
     private final List<Diffable> pendingDiffables;
     private final List<Change> changes = new ArrayList<>();
 
+    // Whether the pending diffables and their subresources have been reevaluated already, e.g. on the calling thread
+    // before their changes are computed in parallel.
+    private boolean reevaluated;
+
     public Diff(Collection<? extends Diffable> currentDiffables, Collection<? extends Diffable> pendingDiffables) {
         this.currentDiffables = currentDiffables != null
             ? new ArrayList<>(currentDiffables)
@@ -75,20 +85,33 @@ public class Diff {
     }
 
     public void diff() {
+        diff(true);
+    }
+
+    // Only the top-level diffables are diffed in parallel since their subresources are usually too few to be worth it,
+    // and only if the root turns it on with @diff: 'parallel', since the resources' getters must be thread-safe.
+    private void diff(boolean parallel) {
         Map<String, Diffable> currentDiffables = this.currentDiffables.stream().collect(
             LinkedHashMap::new,
             (map, r) -> map.put(r.primaryKey(), r),
             Map::putAll
         );
 
-        for (Diffable pendingDiffable : pendingDiffables) {
-            DiffableInternals.reevaluate(pendingDiffable);
+        if (parallel && pendingDiffables.size() > 1 && getMode() == DiffMode.PARALLEL) {
+            diffInParallel(currentDiffables);
 
-            Diffable currentDiffable = currentDiffables.remove(pendingDiffable.primaryKey());
+        } else {
+            for (Diffable pendingDiffable : pendingDiffables) {
+                if (!reevaluated) {
+                    DiffableInternals.reevaluate(pendingDiffable);
+                }
 
-            changes.add(currentDiffable == null
-                ? newCreate(pendingDiffable)
-                : newUpdate(currentDiffable, pendingDiffable));
+                Diffable currentDiffable = currentDiffables.remove(pendingDiffable.primaryKey());
+
+                changes.add(currentDiffable == null
+                    ? newCreate(pendingDiffable)
+                    : newUpdate(currentDiffable, pendingDiffable));
+            }
         }
 
         for (Diffable resource : currentDiffables.values()) {
@@ -96,6 +119,83 @@ public class Diff {
         }
     }
 
+    private DiffMode getMode() {
+        return pendingDiffables.stream()
+            .map(DiffableInternals::getScope)
+            .filter(Objects::nonNull)
+            .findFirst()
+            .map(Scope::getRootScope)
+            .map(r -> r.getSettings(DiffSettings.class).getMode())
+            .orElse(DiffMode.SEQUENTIAL);
+    }
+
+    // The pending diffables and their subresources are reevaluated first and in order on this thread, since they can
+    // refer to each other and reevaluating goes through the shared evaluator and root. Only the changes, which just
+    // compare each pair, are computed in parallel, and they're added in the original order afterwards.
+    private void diffInParallel(Map<String, Diffable> currentDiffables) {
+        List<ChangeComputation> computations = new ArrayList<>();
+        GyroUI ui = GyroCore.ui();
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+        for (Diffable pendingDiffable : pendingDiffables) {
+            reevaluateAll(pendingDiffable);
+
+            computations.add(new ChangeComputation(
+                currentDiffables.remove(pendingDiffable.primaryKey()),
+                pendingDiffable,
+                ui,
+                classLoader));
+        }
+
+        reevaluated = true;
+
+        ForkJoinPool pool = new ForkJoinPool(Math.min(computations.size(), Runtime.getRuntime().availableProcessors()));
+
+        try {
+            pool.invokeAll(computations);
+
+        } finally {
+            pool.shutdown();
+        }
+
+        for (ChangeComputation computation : computations) {
+            if (computation.ui != null) {
+                computation.ui.replay();
+            }
+
+            if (computation.error instanceof RuntimeException) {
+                throw (RuntimeException) computation.error;
+
+            } else if (computation.error != null) {
+                throw (Error) computation.error;
+            }
+
+            changes.add(computation.change);
+        }
+    }
+
+    private static void reevaluateAll(Diffable diffable) {
+        DiffableInternals.reevaluate(diffable);
+
+        for (DiffableField field : DiffableType.getInstance(diffable.getClass()).getFields()) {
+            if (!field.shouldBeDiffed()) {
+                continue;
+            }
+
+            Object value = field.getValue(diffable);
+
+            if (value instanceof Collection) {
+                ((Collection<?>) value).stream()
+                    .filter(Diffable.class::isInstance)
+                    .map(Diffable.class::cast)
+                    .forEach(Diff::reevaluateAll);
+
+            } else if (value instanceof Diffable) {
+                reevaluateAll((Diffable) value);
+            }
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private Change newCreate(Diffable diffable) {
         Create create = new Create(diffable);
@@ -121,7 +221,8 @@ public class Diff {
             }
 
             if (diff != null) {
-                diff.diff();
+                diff.reevaluated = reevaluated;
+                diff.diff(false);
                 create.getDiffs().add(diff);
             }
         }
@@ -129,8 +230,33 @@ public class Diff {
         return create;
     }
 
+    private static boolean hasSubresources(Diffable diffable) {
+        return DiffableType.getInstance(diffable.getClass())
+            .getFields()
+            .stream()
+            .filter(DiffableField::shouldBeDiffed)
+            .map(f -> f.getValue(diffable))
+            .anyMatch(v -> v instanceof Collection ? !((Collection<?>) v).isEmpty() : v != null);
+    }
+
     @SuppressWarnings("unchecked")
     private Change newUpdate(Diffable currentDiffable, Diffable pendingDiffable) {
+        String fingerprint = DiffableInternals.getFingerprint(currentDiffable);
+
+        // Nothing changed since the current diffable was saved. Subresources are always diffed since they're only
+        // reevaluated then, and the diffs are what gives them their changes.
+        if (fingerprint != null
+            && !hasSubresources(currentDiffable)
+            && !hasSubresources(pendingDiffable)
+            && fingerprint.equals(DiffableInternals.computeFingerprint(pendingDiffable))) {
+
+            Change keep = new Keep(pendingDiffable);
+
+            DiffableInternals.setChange(currentDiffable, keep);
+            DiffableInternals.setChange(pendingDiffable, keep);
+            return keep;
+        }
+
         List<Diff> diffs = new ArrayList<>();
         DiffableType<? extends Diffable> type = DiffableType.getInstance(currentDiffable.getClass());
         Set<String> currentConfiguredFields = DiffableInternals.getConfiguredFields(currentDiffable);
@@ -170,7 +296,8 @@ public class Diff {
             }
 
             if (diff != null) {
-                diff.diff();
+                diff.reevaluated = reevaluated;
+                diff.diff(false);
                 diffs.add(diff);
             }
         }
@@ -266,7 +393,7 @@ public class Diff {
             }
 
             if (diff != null) {
-                diff.diff();
+                diff.diff(false);
                 delete.getDiffs().add(diff);
             }
         }
@@ -406,6 +533,11 @@ public class Diff {
 
                 result = change.execute(ui, state, processors);
 
+                // Executing the change can set the resource ID.
+                Optional.ofNullable(DiffableInternals.getScope(diffable))
+                    .map(Scope::getFileScope)
+                    .ifPresent(FileScope::invalidateResources);
+
             } catch (Exception error) {
                 throw new GyroException(
                     String.format(
@@ -423,4 +555,51 @@ public class Diff {
         }
     }
 
+    private class ChangeComputation implements Callable<Void> {
+
+        private final Diffable currentDiffable;
+        private final Diffable pendingDiffable;
+        private final BufferedGyroUI ui;
+        private final ClassLoader classLoader;
+        private Change change;
+        private Throwable error;
+
+        public ChangeComputation(
+            Diffable currentDiffable,
+            Diffable pendingDiffable,
+            GyroUI ui,
+            ClassLoader classLoader) {
+
+            this.currentDiffable = currentDiffable;
+            this.pendingDiffable = pendingDiffable;
+            this.ui = ui != null ? new BufferedGyroUI(ui) : null;
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        public Void call() {
+            Thread thread = Thread.currentThread();
+            ClassLoader oldClassLoader = thread.getContextClassLoader();
+
+            thread.setContextClassLoader(classLoader);
+            GyroCore.pushUi(ui);
+
+            try {
+                change = currentDiffable == null
+                    ? newCreate(pendingDiffable)
+                    : newUpdate(currentDiffable, pendingDiffable);
+
+            } catch (RuntimeException | Error e) {
+                error = e;
+
+            } finally {
+                GyroCore.popUi();
+                thread.setContextClassLoader(oldClassLoader);
+            }
+
+            return null;
+        }
+
+    }
+
 }
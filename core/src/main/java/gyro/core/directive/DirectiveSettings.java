@@ -41,4 +41,8 @@ public class DirectiveSettings extends Settings {
             Reflections.newInstance(processorClass));
     }
 
+    public void putAllProcessors(DirectiveSettings other) {
+        processors.putAll(other.processors);
+    }
+
 }
@@ -40,4 +40,8 @@ public class ReferenceSettings extends Settings {
             Reflections.newInstance(resolverClass));
     }
 
+    public void putAllResolvers(ReferenceSettings other) {
+        resolvers.putAll(other.resolvers);
+    }
+
 }
@@ -39,6 +39,11 @@ public abstract class Diffable {
     DiffableScope scope;
     Change change;
     Set<String> configuredFields;
+    String fingerprint;
+
+    // Only depend on the name and the parent, which are reset through DiffableInternals#resetIdentity.
+    String cachedPrimaryKey;
+    int cachedHashCode;
     final List<Modification<? extends Diffable>> modifications = new ArrayList<>();
 
     public abstract String primaryKey();
@@ -98,7 +103,18 @@ public abstract class Diffable {
 
     @Override
     public final int hashCode() {
-        return Objects.hash(parent(), name, primaryKey());
+        int hashCode = cachedHashCode;
+
+        if (hashCode == 0) {
+            hashCode = Objects.hash(parent(), name, primaryKey());
+
+            // Other diffables can have primary keys that depend on their field values.
+            if (this instanceof Resource && parent == null) {
+                cachedHashCode = hashCode;
+            }
+        }
+
+        return hashCode;
     }
 
     @Override
@@ -117,6 +133,12 @@ public abstract class Diffable {
             DiffableField idField = DiffableType.getInstance(getClass()).getIdField();
             return Objects.equals(idField.getValue(this), idField.getValue(otherDiffable));
 
+        } else if (cachedHashCode != 0
+            && otherDiffable.cachedHashCode != 0
+            && cachedHashCode != otherDiffable.cachedHashCode) {
+
+            return false;
+
         } else {
             return Objects.equals(parent(), otherDiffable.parent())
                 && Objects.equals(name, otherDiffable.name)
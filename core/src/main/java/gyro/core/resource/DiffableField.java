@@ -17,6 +17,9 @@
 package gyro.core.resource;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
@@ -33,6 +36,7 @@ import com.google.common.base.CaseFormat;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.primitives.Primitives;
 import com.psddev.dari.util.ConversionException;
 import gyro.core.GyroException;
 import gyro.core.Reflections;
@@ -40,6 +44,8 @@ import gyro.core.scope.Scope;
 import gyro.core.validation.ValidationError;
 import gyro.core.validation.Validator;
 import gyro.core.validation.ValidatorClass;
+import gyro.lang.Symbols;
+import gyro.util.Bug;
 
 public class DiffableField {
 
@@ -58,6 +64,11 @@ public class DiffableField {
     private final String name;
     private final Method getter;
     private final Method setter;
+    private final MethodHandle getterHandle;
+    private final MethodHandle setterHandle;
+    private final Type setterType;
+    private final Class<?> setterPassThroughClass;
+    private final boolean setterCollection;
     private final boolean updatable;
     private final boolean calculated;
     private final boolean output;
@@ -65,9 +76,14 @@ public class DiffableField {
     private final Class<?> itemClass;
 
     protected DiffableField(String javaName, Method getter, Method setter, Type type) {
-        this.name = CaseFormat.LOWER_CAMEL.to(CaseFormat.LOWER_HYPHEN, javaName);
+        this.name = Symbols.intern(CaseFormat.LOWER_CAMEL.to(CaseFormat.LOWER_HYPHEN, javaName));
         this.getter = getter;
         this.setter = setter;
+        this.getterHandle = unreflect(getter).asType(MethodType.methodType(Object.class, Object.class));
+        this.setterHandle = unreflect(setter).asType(MethodType.methodType(void.class, Object.class, Object.class));
+        this.setterType = setter.getGenericParameterTypes()[0];
+        this.setterPassThroughClass = getPassThroughClass(setterType);
+        this.setterCollection = Collection.class.isAssignableFrom(setter.getParameterTypes()[0]);
         this.updatable = isAnnotationPresent(getter, Updatable.class);
         this.calculated = isAnnotationPresent(getter, Calculated.class);
         this.output = isAnnotationPresent(getter, Output.class);
@@ -98,6 +114,11 @@ public class DiffableField {
         name = field.name;
         getter = field.getter;
         setter = field.setter;
+        getterHandle = field.getterHandle;
+        setterHandle = field.setterHandle;
+        setterType = field.setterType;
+        setterPassThroughClass = field.setterPassThroughClass;
+        setterCollection = field.setterCollection;
         updatable = field.updatable;
         calculated = field.calculated;
         output = field.output;
@@ -136,24 +157,35 @@ public class DiffableField {
     }
 
     public Object getValue(Diffable diffable) {
-        return Reflections.invoke(getter, diffable);
+        try {
+            return getterHandle.invokeExact((Object) diffable);
+
+        } catch (RuntimeException | Error error) {
+            throw error;
+
+        } catch (Throwable error) {
+            throw new GyroException(error);
+        }
     }
 
     public void setValue(Diffable diffable, Object value) {
         Scope scope = diffable.scope;
-        Type type = setter.getGenericParameterTypes()[0];
 
         try {
-            if (value instanceof Collection
-                && !Collection.class.isAssignableFrom(setter.getParameterTypes()[0])) {
-
+            if (value instanceof Collection && !setterCollection) {
                 value = ((Collection<?>) value).stream()
                     .filter(Objects::nonNull)
                     .findFirst()
                     .orElse(null);
             }
 
-            Reflections.invoke(setter, diffable, scope.getRootScope().convertValue(type, value));
+            Object converted = value != null
+                && setterPassThroughClass != null
+                && setterPassThroughClass.isInstance(value)
+                ? value
+                : scope.getRootScope().convertValue(setterType, value);
+
+            setterHandle.invokeExact((Object) diffable, converted);
 
         } catch (ConversionException error) {
             throw new GyroException(
@@ -162,7 +194,13 @@ public class DiffableField {
                     "Can't set @|bold %s|@ to @|bold %s|@ because it can't be converted to an instance of @|bold %s|@!",
                     name,
                     value,
-                    type.getTypeName()));
+                    setterType.getTypeName()));
+
+        } catch (RuntimeException | Error error) {
+            throw error;
+
+        } catch (Throwable error) {
+            throw new GyroException(error);
         }
     }
 
@@ -246,6 +284,25 @@ public class DiffableField {
         }
     }
 
+    // Values that are already instances of a plain class don't need to go through the converter. Object is excluded
+    // since the converter's inheritable functions, e.g. ResourceToIdObject, can still apply to it, and so are
+    // parameterized types since their items may need to be converted.
+    private static Class<?> getPassThroughClass(Type type) {
+        return type instanceof Class && type != Object.class
+            ? Primitives.wrap((Class<?>) type)
+            : null;
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        try {
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method);
+
+        } catch (IllegalAccessException error) {
+            throw new Bug(error);
+        }
+    }
+
     private static Method getSuperMethod(Method method) {
         Class<?> superclass = method.getDeclaringClass().getSuperclass();
         if (superclass != null) {
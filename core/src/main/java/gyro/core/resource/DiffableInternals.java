@@ -16,17 +16,27 @@
 
 package gyro.core.resource;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Stream;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import gyro.core.Reflections;
 import gyro.core.diff.Change;
 import gyro.core.scope.DiffableScope;
+import gyro.core.scope.FileScope;
 import gyro.core.scope.NodeEvaluator;
 import gyro.core.scope.RootScope;
+import gyro.core.scope.Scope;
 import gyro.lang.ast.block.BlockNode;
 
 public final class DiffableInternals {
@@ -44,6 +54,13 @@ public final class DiffableInternals {
 
     public static void setName(Diffable diffable, String name) {
         diffable.name = name;
+
+        resetIdentity(diffable);
+
+        // Lookups by ID are cached per file scope and include only the resources that are stored under their names.
+        Optional.ofNullable(diffable.scope)
+            .map(Scope::getFileScope)
+            .ifPresent(FileScope::invalidateResources);
     }
 
     public static DiffableScope getScope(Diffable diffable) {
@@ -58,6 +75,134 @@ public final class DiffableInternals {
         return diffable.configuredFields;
     }
 
+    public static String getFingerprint(Diffable diffable) {
+        return diffable.fingerprint;
+    }
+
+    public static void updateFingerprint(Diffable diffable) {
+        diffable.fingerprint = computeFingerprint(diffable);
+    }
+
+    /**
+     * Computes a fingerprint of the configured values in the given {@code diffable} and its subresources. Two
+     * diffables with the same fingerprint don't have any changes between them.
+     *
+     * @param diffable Nonnull.
+     * @return Nullable if any of the values is of a type whose state can't be hashed reliably, e.g. one that isn't
+     * written to the state as is and might not show all of it in its {@code toString}.
+     */
+    public static String computeFingerprint(Diffable diffable) {
+        Hasher hasher = Hashing.sha256().newHasher();
+
+        return putFingerprint(hasher, diffable) ? hasher.hash().toString() : null;
+    }
+
+    private static boolean putFingerprint(Hasher hasher, Diffable diffable) {
+        Set<String> configuredFields = getConfiguredFields(diffable);
+
+        putFingerprintString(hasher, diffable.primaryKey());
+
+        for (DiffableField field : DiffableType.getInstance(diffable.getClass()).getFields()) {
+            String fieldName = field.getName();
+
+            if (!configuredFields.contains(fieldName)) {
+                continue;
+            }
+
+            Object value = field.getValue(diffable);
+
+            putFingerprintString(hasher, fieldName);
+
+            if (field.shouldBeDiffed()) {
+                hasher.putChar('d');
+
+                boolean hashed = (value instanceof Collection ? ((Collection<?>) value).stream() : Stream.of(value))
+                    .filter(Diffable.class::isInstance)
+                    .map(Diffable.class::cast)
+                    .allMatch(d -> putFingerprint(hasher, d));
+
+                if (!hashed) {
+                    return false;
+                }
+
+                hasher.putChar('e');
+
+            } else if (!putFingerprintValue(hasher, value)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Follows how the values are written to the state so that they fingerprint the same after being read back. Null
+    // items and entries are hashed too even though the state drops them, so that adding or removing one counts as a
+    // change. A fingerprint recomputed after a refresh, without them, only costs a full diff. Only the types that the
+    // state writes are hashed, since the toString of any other type may not reflect all of its state.
+    private static boolean putFingerprintValue(Hasher hasher, Object value) {
+        if (value == null) {
+            hasher.putChar('0');
+
+        } else if (value instanceof Resource) {
+            Resource resource = (Resource) value;
+
+            if (resource.external) {
+                hasher.putChar('i');
+                return putFingerprintValue(hasher, DiffableType.getInstance(resource).getIdField().getValue(resource));
+
+            } else {
+                hasher.putChar('r');
+                putFingerprintString(hasher, resource.primaryKey());
+            }
+
+        } else if (value instanceof Collection) {
+            hasher.putChar('l');
+
+            for (Object item : (Collection<?>) value) {
+                if (!putFingerprintValue(hasher, item)) {
+                    return false;
+                }
+            }
+
+            hasher.putChar('e');
+
+        } else if (value instanceof Map) {
+            hasher.putChar('m');
+
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!putFingerprintValue(hasher, entry.getKey()) || !putFingerprintValue(hasher, entry.getValue())) {
+                    return false;
+                }
+            }
+
+            hasher.putChar('e');
+
+        } else if (value instanceof Boolean) {
+            hasher.putChar('b').putBoolean((Boolean) value);
+
+        } else if (value instanceof Number) {
+            hasher.putChar('n');
+            putFingerprintString(hasher, value.toString());
+
+        } else if (value instanceof Enum<?>) {
+            hasher.putChar('s');
+            putFingerprintString(hasher, ((Enum<?>) value).name());
+
+        } else if (value instanceof String || value instanceof Date) {
+            hasher.putChar('s');
+            putFingerprintString(hasher, value.toString());
+
+        } else {
+            return false;
+        }
+
+        return true;
+    }
+
+    private static void putFingerprintString(Hasher hasher, String string) {
+        hasher.putInt(string.length()).putString(string, StandardCharsets.UTF_8);
+    }
+
     @SuppressWarnings("unchecked")
     public static <T extends Diffable> List<Modification<T>> getModifications(T diffable) {
         return (List) diffable.modifications;
@@ -96,9 +241,92 @@ public final class DiffableInternals {
         }
     }
 
+    /**
+     * Copies the given {@code diffable}, along with its modifications and subresources, so that the copy can be
+     * changed without changing the original, e.g. in a snapshot of its root.
+     *
+     * @param diffable Nonnull.
+     * @param parent Nonnull. The scope that the copy is evaluated in.
+     * @return Nonnull.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Diffable> T copy(T diffable, Scope parent) {
+        T copy = (T) Reflections.newInstance(diffable.getClass());
+
+        copy.external = diffable.external;
+        copy.name = diffable.name;
+        copy.fingerprint = diffable.fingerprint;
+        copy.scope = diffable.scope.copy(parent);
+
+        if (diffable.configuredFields != null) {
+            copy.configuredFields = new LinkedHashSet<>(diffable.configuredFields);
+        }
+
+        if (diffable.scope.getSettings(SelfSettings.class).getSelf() == diffable) {
+            copy.scope.getSettings(SelfSettings.class).setSelf((Resource) copy);
+        }
+
+        for (Modification<? extends Diffable> modification : diffable.modifications) {
+            copy.modifications.add(copy(modification, copy.scope));
+        }
+
+        for (DiffableField field : DiffableType.getInstance(diffable.getClass()).getFields()) {
+
+            // Already copied along with the modifications.
+            if (field instanceof ModificationField) {
+                continue;
+            }
+
+            Object value = field.getValue(diffable);
+
+            field.setValue(copy, field.shouldBeDiffed() ? copySubresources(value, copy) : copyValue(value));
+        }
+
+        updateChildren(copy, false);
+        return copy;
+    }
+
+    private static Object copySubresources(Object value, Diffable parent) {
+        if (value instanceof Collection) {
+            Collection<Object> copies = value instanceof Set ? new LinkedHashSet<>() : new ArrayList<>();
+
+            for (Object item : (Collection<?>) value) {
+                copies.add(item instanceof Diffable ? copy((Diffable) item, parent.scope) : item);
+            }
+
+            return copies;
+
+        } else if (value instanceof Diffable) {
+            return copy((Diffable) value, parent.scope);
+
+        } else {
+            return value;
+        }
+    }
+
+    private static Object copyValue(Object value) {
+        if (value instanceof List) {
+            return new ArrayList<>((List<?>) value);
+
+        } else if (value instanceof Set) {
+            return new LinkedHashSet<>((Set<?>) value);
+
+        } else if (value instanceof Map) {
+            return new LinkedHashMap<>((Map<?, ?>) value);
+
+        } else {
+            return value;
+        }
+    }
+
     public static void update(Diffable diffable, boolean newScope) {
+        resetIdentity(diffable);
+
         if (newScope) {
             diffable.scope = new DiffableScope(diffable.scope.getParent(), null);
+
+            // The values may have changed since the fingerprint was read from the state.
+            diffable.fingerprint = null;
         }
 
         updateChildren(diffable, newScope);
@@ -121,9 +349,18 @@ public final class DiffableInternals {
                         d.parent = diffable;
                         d.name = fieldName;
 
+                        resetIdentity(d);
+
                         updateChildren(d, newScope);
                     });
             }
         }
     }
+
+    // Drops the primary key and the hash code that were cached from the name and the parent.
+    private static void resetIdentity(Diffable diffable) {
+        diffable.cachedPrimaryKey = null;
+        diffable.cachedHashCode = 0;
+    }
+
 }
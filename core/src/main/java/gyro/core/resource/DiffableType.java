@@ -20,6 +20,7 @@ import java.beans.PropertyDescriptor;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -39,6 +40,7 @@ import gyro.core.scope.DiffableScope;
 import gyro.core.scope.RootScope;
 import gyro.core.scope.Scope;
 import gyro.core.validation.ValidationError;
+import gyro.lang.Symbols;
 import gyro.lang.ast.Node;
 import gyro.parser.antlr4.GyroParser;
 
@@ -63,6 +65,10 @@ public class DiffableType<D extends Diffable> {
     private final Set<Class<? extends Modification<D>>> modificationClasses = new HashSet<>();
     private final List<ModificationField> modificationFields = new ArrayList<>();
 
+    // Rebuilt whenever a modification adds more fields.
+    private volatile List<DiffableField> allFields;
+    private volatile Map<String, DiffableField> fieldsByName;
+
     @SuppressWarnings("unchecked")
     public static <T extends Diffable> DiffableType<T> getInstance(Class<T> diffableClass) {
         return (DiffableType<T>) INSTANCES.getUnchecked(diffableClass);
@@ -80,7 +86,7 @@ public class DiffableType<D extends Diffable> {
 
         if (type.isPresent()) {
             this.root = true;
-            this.name = Reflections.getNamespace(diffableClass) + "::" + type.get();
+            this.name = Symbols.intern(Reflections.getNamespace(diffableClass) + "::" + type.get());
 
         } else {
             this.root = false;
@@ -116,6 +122,24 @@ public class DiffableType<D extends Diffable> {
 
         this.idField = idField;
         this.fields = fields.build();
+
+        updateAllFields();
+    }
+
+    private void updateAllFields() {
+        List<DiffableField> allFields = ImmutableList.<DiffableField>builder()
+            .addAll(fields)
+            .addAll(modificationFields)
+            .build();
+
+        Map<String, DiffableField> fieldsByName = new HashMap<>();
+
+        for (DiffableField field : allFields) {
+            fieldsByName.putIfAbsent(field.getName(), field);
+        }
+
+        this.allFields = allFields;
+        this.fieldsByName = Collections.unmodifiableMap(fieldsByName);
     }
 
     public boolean isRoot() {
@@ -131,22 +155,11 @@ public class DiffableType<D extends Diffable> {
     }
 
     public List<DiffableField> getFields() {
-        ImmutableList.Builder<DiffableField> fields = ImmutableList.builder();
-
-        fields.addAll(this.fields);
-        fields.addAll(this.modificationFields);
-
-        return fields.build();
+        return allFields;
     }
 
     public DiffableField getField(String name) {
-        for (DiffableField field : getFields()) {
-            if (field.getName().equals(name)) {
-                return field;
-            }
-        }
-
-        return null;
+        return fieldsByName.get(name);
     }
 
     public D newExternal(RootScope root, Object id) {
@@ -174,7 +187,7 @@ public class DiffableType<D extends Diffable> {
 
         scope.addProcessor(new CalculatedDiffableProcessor());
 
-        diffable.name = name;
+        DiffableInternals.setName(diffable, name);
 
         setValues(diffable, scope);
         return diffable;
@@ -227,6 +240,9 @@ public class DiffableType<D extends Diffable> {
             }
         }
 
+        // Only set when the values are read from the state.
+        diffable.fingerprint = (String) values.get("_fingerprint");
+
         if (!invalidFieldNames.isEmpty()) {
             throw new GyroException(
                 values instanceof Scope
@@ -247,7 +263,7 @@ public class DiffableType<D extends Diffable> {
         return errors;
     }
 
-    void modify(Class<? extends Modification<D>> modificationClass) {
+    synchronized void modify(Class<? extends Modification<D>> modificationClass) {
         if (modificationClasses.add(modificationClass)) {
             DiffableType<? extends Modification<D>> modificationType = DiffableType.getInstance(modificationClass);
 
@@ -257,6 +273,8 @@ public class DiffableType<D extends Diffable> {
                     .map(ModificationField::new)
                     .collect(Collectors.toSet())
             );
+
+            updateAllFields();
         }
     }
 
@@ -50,6 +50,13 @@ public abstract class Resource extends Diffable {
 
     @Override
     public String primaryKey() {
-        return String.format("%s::%s", DiffableType.getInstance(getClass()).getName(), name);
+        String primaryKey = cachedPrimaryKey;
+
+        if (primaryKey == null) {
+            primaryKey = DiffableType.getInstance(getClass()).getName() + "::" + name;
+            cachedPrimaryKey = primaryKey;
+        }
+
+        return primaryKey;
     }
 }
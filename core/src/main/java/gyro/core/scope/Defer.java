@@ -27,11 +27,14 @@ import gyro.lang.ast.Node;
 public class Defer extends Error {
 
     private final Node node;
+    private final Defer rootCause;
 
+    // Deferring is a normal part of evaluation and happens many times per run, so don't pay for the stack trace.
     public Defer(Node node, String message, Defer cause) {
-        super(message, cause);
+        super(message, cause, false, false);
 
         this.node = node;
+        this.rootCause = cause != null ? cause.rootCause : this;
     }
 
     public Defer(Node node, String message) {
@@ -42,8 +45,8 @@ public class Defer extends Error {
         int size = items.size();
 
         while (true) {
-            List<Defer> errors = new ArrayList<>();
-            List<T> deferred = new ArrayList<>();
+            List<Defer> errors = new ArrayList<>(size);
+            List<T> deferred = new ArrayList<>(size);
 
             for (T item : items) {
                 try {
@@ -95,6 +98,10 @@ public class Defer extends Error {
         }
     }
 
+    public Defer getRootCause() {
+        return rootCause;
+    }
+
     @Override
     public synchronized Defer getCause() {
         return (Defer) super.getCause();
@@ -0,0 +1,467 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+import gyro.lang.ast.Node;
+import gyro.lang.ast.PairNode;
+import gyro.lang.ast.block.BlockNode;
+import gyro.lang.ast.block.DirectiveNode;
+import gyro.lang.ast.block.DirectiveOption;
+import gyro.lang.ast.block.DirectiveSection;
+import gyro.lang.ast.block.KeyBlockNode;
+import gyro.lang.ast.block.ResourceNode;
+import gyro.lang.ast.value.BinaryNode;
+import gyro.lang.ast.value.IndexedNode;
+import gyro.lang.ast.value.InterpolatedStringNode;
+import gyro.lang.ast.value.ListNode;
+import gyro.lang.ast.value.MapNode;
+import gyro.lang.ast.value.ReferenceNode;
+import gyro.lang.ast.value.ValueNode;
+import gyro.lang.filter.AbstractCompoundFilter;
+import gyro.lang.filter.ComparisonFilter;
+import gyro.lang.filter.Filter;
+
+// Dependencies between top-level statements, derived statically from the references, @extends sources and @for
+// inputs within them. The graph is only used for ordering, so anything that it can't see, such as a reference with a
+// computed name, is still resolved by deferring.
+class DependencyGraph {
+
+    private final List<Node> nodes;
+    private final List<Scope> scopes;
+    private final List<Set<Integer>> dependencies;
+
+    private final Map<String, List<Integer>> keyProviders = new HashMap<>();
+    private final Map<String, List<Integer>> typeProviders = new HashMap<>();
+    private final Map<String, List<Integer>> dynamicTypeProviders = new HashMap<>();
+    private final Map<String, List<Integer>> virtualProviders = new HashMap<>();
+    private final Map<String, Set<String>> virtualTypes = new HashMap<>();
+    private final Map<Scope, Map<String, List<Integer>>> variableProviders = new HashMap<>();
+
+    public DependencyGraph(List<Node> nodes, List<Scope> scopes) {
+        int size = nodes.size();
+
+        this.nodes = nodes;
+        this.scopes = scopes;
+        this.dependencies = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            dependencies.add(new LinkedHashSet<>());
+            addVirtualProviders(i, nodes.get(i));
+        }
+
+        for (int i = 0; i < size; i++) {
+            addProviders(i, nodes.get(i), true);
+        }
+
+        for (int i = 0; i < size; i++) {
+            addDependencies(i, nodes.get(i));
+        }
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public Node getNode(int index) {
+        return nodes.get(index);
+    }
+
+    public Scope getScope(int index) {
+        return scopes.get(index);
+    }
+
+    public Set<Integer> getDependencies(int index) {
+        return dependencies.get(index);
+    }
+
+    // Every statement comes after the ones that it depends on, with ties broken by the original order. Statements
+    // involved in a cycle are placed at the end, also in the original order, so that evaluating them produces the
+    // usual diagnostics.
+    public List<Integer> sort() {
+        int size = size();
+        int[] remaining = new int[size];
+        List<List<Integer>> dependents = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            dependents.add(new ArrayList<>());
+        }
+
+        for (int i = 0; i < size; i++) {
+            Set<Integer> d = dependencies.get(i);
+
+            remaining[i] = d.size();
+
+            for (Integer j : d) {
+                dependents.get(j).add(i);
+            }
+        }
+
+        PriorityQueue<Integer> ready = new PriorityQueue<>();
+        List<Integer> sorted = new ArrayList<>(size);
+        boolean[] done = new boolean[size];
+
+        for (int i = 0; i < size; i++) {
+            if (remaining[i] == 0) {
+                ready.add(i);
+            }
+        }
+
+        for (Integer i; (i = ready.poll()) != null; ) {
+            sorted.add(i);
+            done[i] = true;
+
+            for (Integer dependent : dependents.get(i)) {
+                if (--remaining[dependent] == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (!done[i]) {
+                sorted.add(i);
+            }
+        }
+
+        return sorted;
+    }
+
+    // Statements that share a scope or that depend on each other, directly or indirectly, are put in the same group.
+    // Each group keeps the statements in the given order, and the groups are ordered by their first statement in the
+    // original order.
+    public List<List<Integer>> partition(List<Integer> order) {
+        int size = size();
+        int[] parents = new int[size];
+        Map<Scope, Integer> firstByScope = new HashMap<>();
+
+        for (int i = 0; i < size; i++) {
+            parents[i] = i;
+        }
+
+        for (int i = 0; i < size; i++) {
+            Integer first = firstByScope.putIfAbsent(scopes.get(i), i);
+
+            if (first != null) {
+                union(parents, i, first);
+            }
+
+            for (Integer j : dependencies.get(i)) {
+                union(parents, i, j);
+            }
+        }
+
+        Map<Integer, List<Integer>> groups = new TreeMap<>();
+
+        for (Integer i : order) {
+            groups.computeIfAbsent(find(parents, i), k -> new ArrayList<>()).add(i);
+        }
+
+        return new ArrayList<>(groups.values());
+    }
+
+    private static int find(int[] parents, int index) {
+        while (parents[index] != index) {
+            parents[index] = parents[parents[index]];
+            index = parents[index];
+        }
+
+        return index;
+    }
+
+    // Always keeps the smaller index as the representative so that groups can be ordered by it.
+    private static void union(int[] parents, int a, int b) {
+        int rootA = find(parents, a);
+        int rootB = find(parents, b);
+
+        if (rootA < rootB) {
+            parents[rootB] = rootA;
+
+        } else if (rootB < rootA) {
+            parents[rootA] = rootB;
+        }
+    }
+
+    private void addVirtualProviders(int index, Node node) {
+        if (node instanceof DirectiveNode) {
+            DirectiveNode directive = (DirectiveNode) node;
+
+            if ("virtual".equals(directive.getName())) {
+                String type = getString(directive.getArguments(), 0);
+
+                if (type != null) {
+                    Set<String> types = virtualTypes.computeIfAbsent(type, k -> new LinkedHashSet<>());
+
+                    add(virtualProviders, type, index);
+                    addResourceTypes(directive.getBody(), types);
+                }
+            }
+        }
+    }
+
+    private void addResourceTypes(List<Node> body, Set<String> types) {
+        for (Node item : body) {
+            if (item instanceof ResourceNode) {
+                types.add(((ResourceNode) item).getType());
+
+            } else if (item instanceof DirectiveNode) {
+                DirectiveNode directive = (DirectiveNode) item;
+
+                addResourceTypes(directive.getBody(), types);
+                directive.getSections().forEach(s -> addResourceTypes(s.getBody(), types));
+            }
+        }
+    }
+
+    private void addProviders(int index, Node node, boolean top) {
+        if (node instanceof ResourceNode) {
+            ResourceNode resource = (ResourceNode) node;
+            String type = resource.getType();
+            Node name = resource.getName();
+
+            add(typeProviders, type, index);
+
+            if (top && name instanceof ValueNode) {
+                add(keyProviders, type + "::" + ((ValueNode) name).getValue(), index);
+
+            } else {
+                add(dynamicTypeProviders, type, index);
+            }
+
+            // Instances of virtual types create resources of other types with names that aren't known until they're
+            // evaluated.
+            addVirtualInstanceProviders(index, type, new LinkedHashSet<>());
+
+        } else if (node instanceof PairNode) {
+            String key = getString(((PairNode) node).getKey());
+
+            if (key != null) {
+                addVariableProvider(index, key);
+            }
+
+        } else if (node instanceof KeyBlockNode) {
+            addVariableProvider(index, ((KeyBlockNode) node).getKey());
+
+        } else if (node instanceof DirectiveNode) {
+            DirectiveNode directive = (DirectiveNode) node;
+
+            if (!"virtual".equals(directive.getName())) {
+                directive.getBody().forEach(i -> addProviders(index, i, false));
+                directive.getSections().forEach(s -> s.getBody().forEach(i -> addProviders(index, i, false)));
+            }
+        }
+    }
+
+    private void addVirtualInstanceProviders(int index, String type, Set<String> seen) {
+        if (!seen.add(type)) {
+            return;
+        }
+
+        Set<String> types = virtualTypes.get(type);
+
+        if (types != null) {
+            for (String t : types) {
+                add(typeProviders, t, index);
+                add(dynamicTypeProviders, t, index);
+                addVirtualInstanceProviders(index, t, seen);
+            }
+        }
+    }
+
+    private void addVariableProvider(int index, String key) {
+        add(variableProviders.computeIfAbsent(scopes.get(index), k -> new HashMap<>()), key, index);
+    }
+
+    private void addDependencies(int index, Node node) {
+        if (node == null) {
+            return;
+        }
+
+        if (node instanceof ResourceNode) {
+            ResourceNode resource = (ResourceNode) node;
+
+            addDependencies(index, virtualProviders.get(resource.getType()));
+            addDependencies(index, resource.getName());
+            resource.getBody().forEach(i -> addDependencies(index, i));
+
+        } else if (node instanceof DirectiveNode) {
+            DirectiveNode directive = (DirectiveNode) node;
+
+            // Virtual bodies are only evaluated when the type is used, and then within their own root.
+            if (!"virtual".equals(directive.getName())) {
+                directive.getArguments().forEach(i -> addDependencies(index, i));
+
+                for (DirectiveOption option : directive.getOptions()) {
+                    option.getArguments().forEach(i -> addDependencies(index, i));
+                }
+
+                directive.getBody().forEach(i -> addDependencies(index, i));
+
+                for (DirectiveSection section : directive.getSections()) {
+                    section.getArguments().forEach(i -> addDependencies(index, i));
+                    section.getBody().forEach(i -> addDependencies(index, i));
+                }
+            }
+
+        } else if (node instanceof KeyBlockNode) {
+            KeyBlockNode keyBlock = (KeyBlockNode) node;
+
+            addDependencies(index, keyBlock.getName());
+            keyBlock.getBody().forEach(i -> addDependencies(index, i));
+
+        } else if (node instanceof BlockNode) {
+            ((BlockNode) node).getBody().forEach(i -> addDependencies(index, i));
+
+        } else if (node instanceof PairNode) {
+            addDependencies(index, ((PairNode) node).getKey());
+            addDependencies(index, ((PairNode) node).getValue());
+
+        } else if (node instanceof BinaryNode) {
+            addDependencies(index, ((BinaryNode) node).getLeft());
+            addDependencies(index, ((BinaryNode) node).getRight());
+
+        } else if (node instanceof IndexedNode) {
+            addDependencies(index, ((IndexedNode) node).getValue());
+            ((IndexedNode) node).getIndexes().forEach(i -> addDependencies(index, i));
+
+        } else if (node instanceof InterpolatedStringNode) {
+            ((InterpolatedStringNode) node).getItems().forEach(i -> addDependencies(index, i));
+
+        } else if (node instanceof ListNode) {
+            ((ListNode) node).getItems().forEach(i -> addDependencies(index, i));
+
+        } else if (node instanceof MapNode) {
+            ((MapNode) node).getEntries().forEach(i -> addDependencies(index, i));
+
+        } else if (node instanceof ReferenceNode) {
+            addReferenceDependencies(index, (ReferenceNode) node);
+        }
+    }
+
+    private void addReferenceDependencies(int index, ReferenceNode node) {
+        List<Node> arguments = node.getArguments();
+
+        arguments.forEach(i -> addDependencies(index, i));
+
+        List<Filter> filters = node.getFilters();
+
+        if (filters != null) {
+            filters.forEach(f -> addFilterDependencies(index, f));
+        }
+
+        String referenceName = getString(arguments, 0);
+
+        if (referenceName == null) {
+            return;
+        }
+
+        if (referenceName.contains("::")) {
+            String resourceName = getString(arguments, 1);
+
+            if (resourceName == null || resourceName.endsWith("*")) {
+                addDependencies(index, typeProviders.get(referenceName));
+
+            } else {
+                addDependencies(index, keyProviders.get(referenceName + "::" + resourceName));
+                addDependencies(index, dynamicTypeProviders.get(referenceName));
+            }
+
+        } else {
+            Map<String, List<Integer>> variables = variableProviders.get(scopes.get(index));
+
+            if (variables == null) {
+                return;
+            }
+
+            List<Integer> providers = variables.get(referenceName);
+
+            if (providers == null) {
+                return;
+            }
+
+            // Use the closest preceding definition like a sequential evaluation would, or wait for all of them otherwise.
+            Integer preceding = null;
+
+            for (Integer provider : providers) {
+                if (provider < index) {
+                    preceding = provider;
+                }
+            }
+
+            if (preceding != null) {
+                addDependency(index, preceding);
+
+            } else {
+                addDependencies(index, providers);
+            }
+        }
+    }
+
+    private void addFilterDependencies(int index, Filter filter) {
+        if (filter instanceof ComparisonFilter) {
+            addDependencies(index, ((ComparisonFilter) filter).getValue());
+
+        } else if (filter instanceof AbstractCompoundFilter) {
+            ((AbstractCompoundFilter) filter).getChildren().forEach(f -> addFilterDependencies(index, f));
+        }
+    }
+
+    private void addDependencies(int index, List<Integer> providers) {
+        if (providers != null) {
+            providers.forEach(p -> addDependency(index, p));
+        }
+    }
+
+    private void addDependency(int index, int provider) {
+        if (index != provider) {
+            dependencies.get(index).add(provider);
+        }
+    }
+
+    private static void add(Map<String, List<Integer>> providers, String key, int index) {
+        List<Integer> list = providers.computeIfAbsent(key, k -> new ArrayList<>());
+
+        if (list.isEmpty() || list.get(list.size() - 1) != index) {
+            list.add(index);
+        }
+    }
+
+    private static String getString(List<Node> nodes, int index) {
+        return index < nodes.size() ? getString(nodes.get(index)) : null;
+    }
+
+    private static String getString(Node node) {
+        if (node instanceof ValueNode) {
+            Object value = ((ValueNode) node).getValue();
+
+            if (value instanceof String) {
+                return (String) value;
+            }
+        }
+
+        return null;
+    }
+
+}
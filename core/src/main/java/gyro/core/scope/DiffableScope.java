@@ -48,7 +48,24 @@ public class DiffableScope extends Scope {
         this.block = scope.block;
         this.processors = new ArrayList<>(scope.processors);
         this.stateNodes = new ArrayList<>(scope.stateNodes);
-        this.getSettingsByClass().putAll(scope.getSettingsByClass().asMap());
+        this.putAllSettings(scope);
+    }
+
+    /**
+     * Copies this scope under the given {@code parent}, e.g. when the diffable that it belongs to is copied into
+     * another root. {@link SelfSettings} aren't copied since they point to the original diffable.
+     *
+     * @param parent Nonnull.
+     * @return Nonnull.
+     */
+    public DiffableScope copy(Scope parent) {
+        DiffableScope copy = new DiffableScope(parent, block);
+
+        copy.processors.addAll(processors);
+        copy.stateNodes.addAll(stateNodes);
+        copy.putAll(this);
+        copy.putAllSettings(this, SelfSettings.class);
+        return copy;
     }
 
     public BlockNode getBlock() {
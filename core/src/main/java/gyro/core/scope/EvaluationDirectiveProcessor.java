@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import gyro.core.GyroException;
+import gyro.core.Type;
+import gyro.core.directive.DirectiveProcessor;
+import gyro.lang.ast.block.DirectiveNode;
+
+@Type("evaluation")
+public class EvaluationDirectiveProcessor extends DirectiveProcessor<RootScope> {
+
+    @Override
+    public void process(RootScope scope, DirectiveNode node) {
+        validateArguments(node, 1, 1);
+
+        String mode = getArgument(scope, node, String.class, 0);
+
+        scope.getSettings(EvaluationSettings.class).setMode(Stream.of(EvaluationMode.values())
+            .filter(m -> m.name().equalsIgnoreCase(mode))
+            .findFirst()
+            .orElseThrow(() -> new GyroException(
+                node.getArguments().get(0),
+                String.format(
+                    "@|bold %s|@ isn't a valid evaluation mode! Use one of: @|bold %s|@",
+                    mode,
+                    Stream.of(EvaluationMode.values())
+                        .map(m -> m.name().toLowerCase())
+                        .collect(Collectors.joining(", "))))));
+    }
+
+}
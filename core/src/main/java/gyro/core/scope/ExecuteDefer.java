@@ -61,11 +61,7 @@ class ExecuteDefer extends Defer {
             }
 
             // Find the underlying cause.
-            Defer cause = error;
-
-            for (Defer c; (c = cause.getCause()) != null; ) {
-                cause = c;
-            }
+            Defer cause = error.getRootCause();
 
             // If the underlying cause was not being able to find the resource by name,
             // store those, grouped by the resource type and name key.
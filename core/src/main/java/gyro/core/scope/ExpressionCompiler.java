@@ -0,0 +1,238 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import gyro.core.GyroException;
+import gyro.lang.ast.Node;
+import gyro.lang.ast.PairNode;
+import gyro.lang.ast.value.BinaryNode;
+import gyro.lang.ast.value.IndexedNode;
+import gyro.lang.ast.value.InterpolatedStringNode;
+import gyro.lang.ast.value.ListNode;
+import gyro.lang.ast.value.MapNode;
+import gyro.lang.ast.value.ReferenceNode;
+import gyro.lang.ast.value.ValueNode;
+
+// Turns value nodes into closures the first time they're evaluated so that re-evaluating the same nodes, e.g. when
+// resources are re-evaluated during diff, doesn't have to walk and dispatch through the tree again. The closures are
+// kept on the nodes themselves so that they're collected along with them, and they take the evaluator as an argument
+// so that nodes shared between roots through FileNodeCache can be compiled once. Expression nodes are never registered
+// as type nodes, so they don't need to be removed from NodeEvaluator's index like the rest.
+class ExpressionCompiler {
+
+    public Expression compile(Node node) {
+        if (!isExpression(node)) {
+            return null;
+        }
+
+        Object compiled = node.getCompiled();
+
+        if (compiled instanceof Expression) {
+            return (Expression) compiled;
+        }
+
+        // Compiling the same node on multiple threads at once is harmless since the results are equivalent.
+        Expression expression = compileExpression(node);
+
+        node.setCompiled(expression);
+        return expression;
+    }
+
+    private boolean isExpression(Node node) {
+        return node instanceof ValueNode
+            || node instanceof ReferenceNode
+            || node instanceof BinaryNode
+            || node instanceof IndexedNode
+            || node instanceof InterpolatedStringNode
+            || node instanceof ListNode
+            || node instanceof MapNode;
+    }
+
+    private Expression compileExpression(Node node) {
+        if (node instanceof ValueNode) {
+            Object value = ((ValueNode) node).getValue();
+
+            return (evaluator, scope) -> value;
+
+        } else if (node instanceof ReferenceNode) {
+            return compileReference((ReferenceNode) node);
+
+        } else if (node instanceof BinaryNode) {
+            return compileBinary((BinaryNode) node);
+
+        } else if (node instanceof IndexedNode) {
+            return compileIndexed((IndexedNode) node);
+
+        } else if (node instanceof InterpolatedStringNode) {
+            return compileInterpolatedString((InterpolatedStringNode) node);
+
+        } else if (node instanceof ListNode) {
+            return compileList((ListNode) node);
+
+        } else {
+            return compileMap((MapNode) node);
+        }
+    }
+
+    private Expression compileChild(Node node) {
+        Expression expression = compile(node);
+
+        return expression != null ? expression : (evaluator, scope) -> evaluator.visit(node, scope);
+    }
+
+    private Expression[] compileChildren(List<? extends Node> nodes) {
+        Expression[] expressions = new Expression[nodes.size()];
+
+        for (int i = 0; i < expressions.length; i++) {
+            expressions[i] = compileChild(nodes.get(i));
+        }
+
+        return expressions;
+    }
+
+    private Expression compileReference(ReferenceNode node) {
+        Expression[] arguments = compileChildren(node.getArguments());
+
+        return (evaluator, scope) -> {
+            List<Object> values = new ArrayList<>(arguments.length);
+
+            for (Expression argument : arguments) {
+                values.add(argument.evaluate(evaluator, scope));
+            }
+
+            return evaluator.resolveReference(node, scope, values);
+        };
+    }
+
+    private Expression compileBinary(BinaryNode node) {
+        BiFunction<Object, Object, Object> function;
+
+        try {
+            function = NodeEvaluator.getBinaryFunction(node.getOperator());
+
+        } catch (GyroException error) {
+            return (evaluator, scope) -> {
+                throw error;
+            };
+        }
+
+        Expression left = compileChild(node.getLeft());
+        Expression right = compileChild(node.getRight());
+
+        return (evaluator, scope) -> function.apply(left.evaluate(evaluator, scope), right.evaluate(evaluator, scope));
+    }
+
+    private Expression compileIndexed(IndexedNode node) {
+        Expression value = compileChild(node.getValue());
+        Expression[] indexes = compileChildren(node.getIndexes());
+
+        return (evaluator, scope) -> {
+            Object result = value.evaluate(evaluator, scope);
+
+            for (Expression index : indexes) {
+                if (result == null) {
+                    return null;
+                }
+
+                Object key = index.evaluate(evaluator, scope);
+
+                if (key == null) {
+                    return null;
+                }
+
+                result = NodeEvaluator.getValue(node, result, key.toString());
+            }
+
+            return result;
+        };
+    }
+
+    private Expression compileInterpolatedString(InterpolatedStringNode node) {
+        Expression[] items = compileChildren(node.getItems());
+
+        return (evaluator, scope) -> {
+            StringBuilder string = new StringBuilder();
+
+            for (Expression item : items) {
+                Object value = item.evaluate(evaluator, scope);
+
+                if (value != null) {
+                    string.append(value);
+                }
+            }
+
+            return string.toString();
+        };
+    }
+
+    private Expression compileList(ListNode node) {
+        Expression[] items = compileChildren(node.getItems());
+
+        return (evaluator, scope) -> {
+            List<Object> list = new ArrayList<>(items.length);
+
+            for (Expression item : items) {
+                list.add(item.evaluate(evaluator, scope));
+            }
+
+            return list;
+        };
+    }
+
+    private Expression compileMap(MapNode node) {
+        List<PairNode> entries = node.getEntries();
+        int size = entries.size();
+        Expression[] keys = new Expression[size];
+        Expression[] values = new Expression[size];
+
+        for (int i = 0; i < size; i++) {
+            PairNode entry = entries.get(i);
+            keys[i] = compileChild(entry.getKey());
+            values[i] = compileChild(entry.getValue());
+        }
+
+        return (evaluator, scope) -> {
+            Scope bodyScope = new Scope(scope);
+            Map<String, Object> map = new LinkedHashMap<>();
+
+            for (int i = 0; i < size; i++) {
+                String key = (String) keys[i].evaluate(evaluator, bodyScope);
+
+                // Same as NodeEvaluator.visitPair so that later entries can refer to the earlier ones.
+                bodyScope.put(key, values[i].evaluate(evaluator, bodyScope));
+                bodyScope.putLocation(key, entries.get(i));
+                map.put(key, bodyScope.get(key));
+            }
+
+            return map;
+        };
+    }
+
+    @FunctionalInterface
+    interface Expression {
+
+        Object evaluate(NodeEvaluator evaluator, Scope scope);
+
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gyro.core.scope;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Resource keys that each file looked up, in its own root and in the current root, while it was being evaluated, so
+// that a root that's rebuilt from the same files can tell which ones might see something different. A key that ends
+// with * stands for all the keys that start with the rest of it, e.g. from a wildcard reference.
+class FileLookups {
+
+    private final Map<String, Set<String>> keysByFile = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> currentKeysByFile = new ConcurrentHashMap<>();
+
+    public void add(String file, String key, boolean current) {
+        (current ? currentKeysByFile : keysByFile)
+            .computeIfAbsent(file, f -> ConcurrentHashMap.newKeySet())
+            .add(key);
+    }
+
+    public boolean hasKeys(String file) {
+        return keysByFile.containsKey(file);
+    }
+
+    /**
+     * @param changedKeys Nullable to match any key.
+     * @param changedCurrentKeys Nullable to match any key.
+     */
+    public boolean matches(String file, Set<String> changedKeys, Set<String> changedCurrentKeys) {
+        return matches(keysByFile.get(file), changedKeys) || matches(currentKeysByFile.get(file), changedCurrentKeys);
+    }
+
+    private static boolean matches(Set<String> keys, Set<String> changedKeys) {
+        if (keys == null || keys.isEmpty()) {
+            return false;
+
+        } else if (changedKeys == null) {
+            return true;
+        }
+
+        for (String key : keys) {
+            if (key.endsWith("*")) {
+                String prefix = key.substring(0, key.length() - 1);
+
+                if (changedKeys.stream().anyMatch(k -> k.startsWith(prefix))) {
+                    return true;
+                }
+
+            } else if (changedKeys.contains(key)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public FileLookups copy() {
+        FileLookups copy = new FileLookups();
+
+        keysByFile.forEach((f, k) -> copy.keysByFile.put(f, copyKeys(k)));
+        currentKeysByFile.forEach((f, k) -> copy.currentKeysByFile.put(f, copyKeys(k)));
+        return copy;
+    }
+
+    private static Set<String> copyKeys(Set<String> keys) {
+        Set<String> copy = ConcurrentHashMap.newKeySet();
+
+        copy.addAll(keys);
+        return copy;
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import gyro.core.FileBackend;
+import gyro.lang.GyroCharStream;
+import gyro.lang.ast.Node;
+import gyro.lang.ast.NodeSerializer;
+import gyro.lang.ast.block.FileNode;
+import gyro.parser.antlr4.GyroParser;
+
+/**
+ * Parsed files by their names and contents so that root scopes that are rebuilt from the same files, e.g. after a
+ * workflow, only have to parse the files that changed.
+ *
+ * <p>If a directory is given, the parsed files are also written there so that later runs don't have to parse the
+ * files that haven't changed since. The ones that no run has used for {@value #MAX_UNUSED_DAYS} days, e.g. older
+ * versions of files that changed since, are deleted from there the first time that a new one is written.</p>
+ *
+ * <p>Only the most recently used {@value #VERSIONS_PER_FILE} versions of each file are kept in memory, e.g. the one
+ * from the state and the one from the configuration.</p>
+ */
+public class FileNodeCache {
+
+    static final int VERSIONS_PER_FILE = 2;
+    static final int MAX_UNUSED_DAYS = 30;
+
+    private final Path directory;
+    private final Map<String, Cache<String, FileNode>> nodes = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicted = new AtomicBoolean();
+
+    public FileNodeCache() {
+        this(null);
+    }
+
+    /**
+     * @param directory Nullable.
+     */
+    public FileNodeCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public FileNode parse(InputStream input, String file) throws IOException {
+        return parse(ByteBuffer.wrap(ByteStreams.toByteArray(input)), file);
+    }
+
+    /**
+     * @param bytes Nonnull. UTF-8 encoded. Not modified, and may be kept to show code snippets later.
+     */
+    public FileNode parse(ByteBuffer bytes, String file) {
+        return parse(bytes, file, null);
+    }
+
+    /**
+     * @param bytes Nonnull. UTF-8 encoded. Not modified.
+     * @param backend Nullable. Where the {@code bytes} were read from, so that they can be read again to show code
+     * snippets later rather than kept.
+     */
+    public FileNode parse(ByteBuffer bytes, String file, FileBackend backend) {
+        String hash = hash(bytes);
+        Cache<String, FileNode> versions = nodes.computeIfAbsent(file, f -> CacheBuilder.newBuilder()
+            .concurrencyLevel(1)
+            .maximumSize(VERSIONS_PER_FILE)
+            .build());
+
+        FileNode node = versions.getIfPresent(hash);
+
+        if (node == null) {
+            Callable<ByteBuffer> source = backend != null ? () -> readAgain(backend, file, hash) : bytes::duplicate;
+
+            node = read(file, hash, source);
+
+            if (node == null) {
+                node = (FileNode) Node.parse(new GyroCharStream(bytes, file, source), GyroParser::file);
+                write(node, hash);
+            }
+
+            versions.put(hash, node);
+        }
+
+        return node;
+    }
+
+    private static String hash(ByteBuffer bytes) {
+        return Hashing.sha256().newHasher().putBytes(bytes.duplicate()).hash().toString();
+    }
+
+    // The nodes are shared by every version of the file with the same content, so the code snippets can only come
+    // from the file as long as it still has that content.
+    private static ByteBuffer readAgain(FileBackend backend, String file, String hash) throws Exception {
+        ByteBuffer bytes = backend.readBuffer(file);
+
+        if (!hash(bytes).equals(hash)) {
+            throw new IllegalStateException(String.format("%s changed since it was parsed!", file));
+        }
+
+        return bytes;
+    }
+
+    // The cache is only an optimization, so any problems with it just fall back to parsing.
+    private FileNode read(String file, String hash, Callable<ByteBuffer> source) {
+        if (directory == null) {
+            return null;
+        }
+
+        Path path = directory.resolve(hash + ".ast");
+
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try (InputStream input = Files.newInputStream(path)) {
+            FileNode node = NodeSerializer.read(input, new GyroCharStream(file, source));
+
+            // The modification time doubles as the last time that the file was used, see evict.
+            try {
+                Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+
+            } catch (IOException error) {
+                // Ignore since the file is just written again if it's evicted too early.
+            }
+
+            return node;
+
+        } catch (IOException | RuntimeException error) {
+            return null;
+        }
+    }
+
+    private void write(FileNode node, String hash) {
+        if (directory == null) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(directory);
+
+            if (evicted.compareAndSet(false, true)) {
+                evict();
+            }
+
+            Path temp = Files.createTempFile(directory, ".file-node-cache-", ".ast.tmp");
+
+            try {
+                try (OutputStream output = Files.newOutputStream(temp)) {
+                    NodeSerializer.write(node, output);
+                }
+
+                Files.move(
+                    temp,
+                    directory.resolve(hash + ".ast"),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+
+        } catch (IOException | RuntimeException error) {
+            // Ignore and parse again next time.
+        }
+    }
+
+    // Deletes the parsed files that weren't read or written recently, which is enough to keep the directory from
+    // growing with every change, since the ones in use are read on every run that doesn't have them in memory.
+    private void evict() throws IOException {
+        long unusedSince = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(MAX_UNUSED_DAYS);
+
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "*.ast")) {
+            for (Path path : paths) {
+                try {
+                    if (Files.getLastModifiedTime(path).toMillis() < unusedSince) {
+                        Files.deleteIfExists(path);
+                    }
+
+                } catch (IOException error) {
+                    // Ignore and try again next time.
+                }
+            }
+        }
+    }
+
+}
@@ -16,15 +16,31 @@
 
 package gyro.core.scope;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import com.google.common.base.Preconditions;
+import gyro.core.resource.Resource;
 
 public class FileScope extends Scope {
 
+    private final Map<String, Object> values;
+    private final ResourceIndex resourceIndex;
     private final String file;
 
     public FileScope(RootScope parent, String file) {
-        super(parent);
+        this(parent, file, Collections.synchronizedMap(new LinkedHashMap<>()));
+    }
 
+    // The values must be synchronized since file scopes can be read by other threads through RootScope while they're
+    // being evaluated in parallel.
+    FileScope(RootScope parent, String file, Map<String, Object> values) {
+        super(parent, values);
+
+        this.values = values;
+        this.resourceIndex = new ResourceIndex(values);
         this.file = Preconditions.checkNotNull(file);
     }
 
@@ -32,4 +48,91 @@ public class FileScope extends Scope {
         return file;
     }
 
+    @Override
+    public Object put(String key, Object value) {
+        synchronized (values) {
+            Object oldValue = super.put(key, value);
+
+            resourceIndex.put(key, oldValue, value);
+            return oldValue;
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> other) {
+        synchronized (values) {
+            other.forEach(this::put);
+        }
+    }
+
+    @Override
+    public Object remove(Object key) {
+        synchronized (values) {
+            Object oldValue = super.remove(key);
+
+            if (key instanceof String) {
+                resourceIndex.remove((String) key, oldValue);
+            }
+
+            return oldValue;
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (values) {
+            super.clear();
+            resourceIndex.clear();
+        }
+    }
+
+    /**
+     * Moves the given {@code scope} under the given {@code parent} in this file, e.g. once everything that was
+     * evaluated into a temporary file scope for it has been merged here, so that the file scope of the values in it
+     * is this one.
+     *
+     * @param scope Nonnull.
+     * @param parent Nonnull. Must be in this file.
+     */
+    public void adopt(Scope scope, Scope parent) {
+        Preconditions.checkNotNull(scope);
+        Preconditions.checkArgument(parent.getFileScope() == this, "The parent must be in this file!");
+
+        scope.setParent(parent);
+    }
+
+    /**
+     * Marks the resources in this scope as changed outside of it, e.g. when their IDs are set after being created or
+     * refreshed, so that the cached lookups in {@link RootScope} are rebuilt.
+     */
+    public void invalidateResources() {
+        synchronized (values) {
+            resourceIndex.invalidate();
+        }
+    }
+
+    long getResourceModifications() {
+        synchronized (values) {
+            return resourceIndex.getModifications();
+        }
+    }
+
+    List<Resource> listResources() {
+        synchronized (values) {
+            return resourceIndex.findAll();
+        }
+    }
+
+    List<Resource> listResourcesByType(String type, String prefix) {
+        synchronized (values) {
+            return resourceIndex.findByType(type, prefix);
+        }
+    }
+
+    List<Resource> listResourcesByClass(Class<?> resourceClass) {
+        synchronized (values) {
+            return resourceIndex.findByClass(resourceClass);
+        }
+    }
+
 }
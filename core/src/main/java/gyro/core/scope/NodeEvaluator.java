@@ -16,20 +16,24 @@
 
 package gyro.core.scope;
 
-import java.beans.BeanInfo;
 import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiFunction;
 import java.util.function.DoubleBinaryOperator;
 import java.util.function.LongBinaryOperator;
@@ -41,9 +45,13 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.psddev.dari.util.ObjectUtils;
 import com.psddev.dari.util.TypeDefinition;
+import gyro.core.BufferedGyroUI;
+import gyro.core.GyroCore;
 import gyro.core.GyroException;
+import gyro.core.GyroUI;
 import gyro.core.Reflections;
 import gyro.core.directive.DirectiveProcessor;
 import gyro.core.directive.DirectiveSettings;
@@ -75,13 +83,17 @@ import gyro.lang.ast.value.MapNode;
 import gyro.lang.ast.value.ReferenceNode;
 import gyro.lang.ast.value.ValueNode;
 import gyro.lang.filter.Filter;
+import gyro.util.Bug;
 import gyro.util.ImmutableCollectors;
 import org.apache.commons.lang3.math.NumberUtils;
 
 public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeException> {
 
-    private Map<String, Set<Node>> typeNodes;
+    private Map<Node, Set<String>> typesByNode;
+    private Map<String, Integer> pendingTypes;
     private List<Node> body;
+    private Map<Node, Integer> deferrals;
+    private final ExpressionCompiler compiler;
 
     private static final LoadingCache<Class<? extends DirectiveProcessor>, Class<? extends Scope>> DIRECTIVE_PROCESSOR_SCOPE_CLASSES = CacheBuilder
         .newBuilder()
@@ -95,6 +107,10 @@ public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeExceptio
             }
         });
 
+    private static final AccessorsByClass ACCESSORS = new AccessorsByClass();
+
+    private static final Set<String> PARALLEL_DIRECTIVES = ImmutableSet.of("for", "if", "log", "print");
+
     private static final Map<String, BiFunction<Object, Object, Object>> BINARY_FUNCTIONS = ImmutableMap.<String, BiFunction<Object, Object, Object>>builder()
         .put("*", (l, r) -> doArithmetic(l, r, (ld, rd) -> ld * rd, (ll, rl) -> ll * rl))
         .put("/", (l, r) -> doArithmetic(l, r, (ld, rd) -> ld / rd, (ll, rl) -> ll / rl))
@@ -248,11 +264,13 @@ public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeExceptio
                 .collect(Collectors.toList());
 
         } else if (object instanceof List) {
-            try {
-                Number index = NumberUtils.createNumber(key);
+            Integer index = parseIndex(key);
+
+            // Not an index so try to look up getter/method.
+            if (index != null) {
                 List<?> list = (List<?>) object;
                 int size = list.size();
-                int i = index.intValue();
+                int i = index;
 
                 if (i < 0) {
                     i += size;
@@ -266,9 +284,6 @@ public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeExceptio
                 }
 
                 return list.get(i);
-
-            } catch (NumberFormatException error) {
-                // Ignore and try to look up getter/method.
             }
 
         } else if (object instanceof Map) {
@@ -276,10 +291,65 @@ public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeExceptio
         }
 
         Class<?> aClass = object.getClass();
-        BeanInfo info = Reflections.getBeanInfo(aClass);
+
+        MethodHandle accessor = ACCESSORS.get(aClass).getUnchecked(key).orElseThrow(() -> {
+            if (object instanceof Diffable) {
+                return new GyroException(node, String.format(
+                    "Can't find the @|bold %s|@ field or property in the @|bold %s|@ type!",
+                    key,
+                    DiffableType.getInstance((Diffable) object).getName()));
+
+            } else {
+                return new GyroException(node, String.format(
+                    "Can't find the @|bold %s|@ property in the @|bold %s|@ class!",
+                    key,
+                    aClass.getName()));
+            }
+        });
+
+        try {
+            return accessor.invokeExact(object);
+
+        } catch (RuntimeException | Error error) {
+            throw error;
+
+        } catch (Throwable error) {
+            throw new GyroException(error);
+        }
+    }
+
+    // Same as NumberUtils.createNumber(key).intValue() but without the exception when the key isn't a number.
+    static Integer parseIndex(String key) {
+        int length = key.length();
+        int start = length > 1 && key.charAt(0) == '-' ? 1 : 0;
+
+        if (length == 0 || length - start > 9) {
+            return parseNumber(key);
+        }
+
+        int index = 0;
+
+        for (int i = start; i < length; i++) {
+            char c = key.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return parseNumber(key);
+            }
+
+            index = index * 10 + (c - '0');
+        }
+
+        return start > 0 ? -index : index;
+    }
+
+    private static Integer parseNumber(String key) {
+        return NumberUtils.isCreatable(key) ? NumberUtils.createNumber(key).intValue() : null;
+    }
+
+    private static Optional<MethodHandle> findAccessor(Class<?> aClass, String key) {
         String methodName = CaseFormat.LOWER_HYPHEN.to(CaseFormat.LOWER_CAMEL, key);
 
-        Method method = Stream.of(info.getPropertyDescriptors())
+        return Optional.ofNullable(Stream.of(Reflections.getBeanInfo(aClass).getPropertyDescriptors())
             .filter(p -> p.getName().equals(methodName))
             .map(PropertyDescriptor::getReadMethod)
             .filter(Objects::nonNull)
@@ -289,30 +359,97 @@ public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeExceptio
                 .filter(m -> m.getParameterCount() == 0)
                 .filter(m -> !m.getReturnType().equals(void.class))
                 .findFirst()
-                .orElseThrow(() -> {
-                    if (object instanceof Diffable) {
-                        return new GyroException(node, String.format(
-                            "Can't find the @|bold %s|@ field or property in the @|bold %s|@ type!",
-                            key,
-                            DiffableType.getInstance((Diffable) object).getName()));
-
-                    } else {
-                        return new GyroException(node, String.format(
-                            "Can't find the @|bold %s|@ property in the @|bold %s|@ class!",
-                            key,
-                            aClass.getName()));
-                    }
-                }));
+                .orElse(null)))
+            .map(NodeEvaluator::unreflect);
+    }
+
+    // Prefers the method from a public class or interface so that the access checks don't have to be suppressed,
+    // e.g. for size on an ImmutableList whose implementation class isn't public.
+    private static MethodHandle unreflect(Method method) {
+        Method publicMethod = findPublicMethod(method.getDeclaringClass(), method.getName());
+        MethodHandle handle;
+
+        try {
+            if (publicMethod != null) {
+                handle = MethodHandles.publicLookup().unreflect(publicMethod);
+
+            } else {
+                method.setAccessible(true);
+                handle = MethodHandles.lookup().unreflect(method);
+            }
+
+        } catch (IllegalAccessException error) {
+            throw new Bug(error);
+        }
+
+        return handle.asType(MethodType.methodType(Object.class, Object.class));
+    }
+
+    private static Method findPublicMethod(Class<?> aClass, String name) {
+        if (aClass == null) {
+            return null;
+        }
+
+        if (Modifier.isPublic(aClass.getModifiers())) {
+            try {
+                return aClass.getMethod(name);
+
+            } catch (NoSuchMethodException error) {
+                return null;
+            }
+        }
 
-        return Reflections.invoke(method, object);
+        for (Class<?> i : aClass.getInterfaces()) {
+            Method method = findPublicMethod(i, name);
+
+            if (method != null) {
+                return method;
+            }
+        }
+
+        return findPublicMethod(aClass.getSuperclass(), name);
+    }
+
+    public NodeEvaluator() {
+        this(true);
+    }
+
+    NodeEvaluator(boolean compile) {
+        this.compiler = compile ? new ExpressionCompiler() : null;
+    }
+
+    static BiFunction<Object, Object, Object> getBinaryFunction(String operator) {
+        BiFunction<Object, Object, Object> function = BINARY_FUNCTIONS.get(operator);
+
+        if (function == null) {
+            throw new GyroException(String.format(
+                "@|bold %s|@ is not a valid binary operator!",
+                operator));
+        }
+
+        return function;
     }
 
     public List<Node> getBody() {
         return body;
     }
 
+    public void recordDeferrals() {
+        if (deferrals == null) {
+            deferrals = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     * @return Number of times that each node was deferred. Empty unless {@link #recordDeferrals} was called.
+     */
+    public Map<Node, Integer> getDeferrals() {
+        return deferrals != null ? deferrals : ImmutableMap.of();
+    }
+
     public void evaluate(RootScope root, List<Node> body) {
-        this.typeNodes = new HashMap<>();
+        this.typesByNode = new ConcurrentHashMap<>();
+        this.pendingTypes = new ConcurrentHashMap<>();
         this.body = body;
 
         body.stream()
@@ -322,12 +459,178 @@ public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeExceptio
             .flatMap(List::stream)
             .forEach(item -> addTypeNode(item, item));
 
-        evaluateBody(body, root);
+        EvaluationMode mode = root.getSettings(EvaluationSettings.class).getMode();
+
+        if (mode == EvaluationMode.DEFER) {
+            evaluateBody(body, root);
+
+        } else {
+            evaluateGraph(root, body, mode == EvaluationMode.PARALLEL);
+        }
+    }
+
+    // Evaluates all top-level statements in dependency order so that most of them succeed on the first try, and only
+    // falls back to retrying for the ones that the graph couldn't account for.
+    private void evaluateGraph(RootScope root, List<Node> body, boolean parallel) {
+        List<Node> nodes = new ArrayList<>();
+        List<Scope> scopes = new ArrayList<>();
+
+        for (Node item : body) {
+            if (item instanceof FileNode) {
+                FileNode fileNode = (FileNode) item;
+                FileScope fileScope = root.getOrCreateFileScope(fileNode.getFile());
+
+                for (Node statement : fileNode.getBody()) {
+                    nodes.add(statement);
+                    scopes.add(fileScope);
+                }
+
+            } else {
+                nodes.add(item);
+                scopes.add(root);
+            }
+        }
+
+        DependencyGraph graph = new DependencyGraph(nodes, scopes);
+        List<Integer> order = graph.sort();
+        List<Integer> deferred = new ArrayList<>();
+
+        if (parallel) {
+            evaluateGroups(root, graph, order, deferred);
+
+        } else {
+            evaluateStatements(graph, order, deferred);
+        }
+
+        if (!deferred.isEmpty()) {
+            Collections.sort(deferred);
+            Defer.execute(deferred, i -> visitDeferrable(graph.getNode(i), graph.getScope(i)));
+        }
+    }
+
+    private void evaluateStatements(DependencyGraph graph, List<Integer> indexes, List<Integer> deferred) {
+        for (Integer i : indexes) {
+            try {
+                visitDeferrable(graph.getNode(i), graph.getScope(i));
+
+            } catch (Defer error) {
+                deferred.add(i);
+            }
+        }
+    }
+
+    // Groups of files that don't depend on each other are evaluated in parallel, except for the ones that can change
+    // the root scope, which are evaluated first and in order. Output and errors from each group are replayed in the
+    // group order afterwards so that they don't depend on the thread timing.
+    private void evaluateGroups(RootScope root, DependencyGraph graph, List<Integer> order, List<Integer> deferred) {
+        List<GroupEvaluation> evaluations = new ArrayList<>();
+        GyroUI ui = GyroCore.ui();
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+        for (List<Integer> group : graph.partition(order)) {
+            if (group.stream().anyMatch(i -> graph.getScope(i) == root || changesRoot(graph.getNode(i)))) {
+                evaluateStatements(graph, group, deferred);
+
+            } else {
+                evaluations.add(new GroupEvaluation(graph, group, ui, classLoader));
+            }
+        }
+
+        if (evaluations.size() < 2) {
+            evaluations.forEach(e -> evaluateStatements(graph, e.group, deferred));
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.min(evaluations.size(), Runtime.getRuntime().availableProcessors()));
+
+        try {
+            pool.invokeAll(evaluations);
+
+        } finally {
+            pool.shutdown();
+        }
+
+        for (GroupEvaluation evaluation : evaluations) {
+            if (evaluation.ui != null) {
+                evaluation.ui.replay();
+            }
+
+            if (evaluation.error instanceof RuntimeException) {
+                throw (RuntimeException) evaluation.error;
+
+            } else if (evaluation.error != null) {
+                throw (Error) evaluation.error;
+            }
+
+            deferred.addAll(evaluation.deferred);
+        }
+    }
+
+    private static boolean changesRoot(Node node) {
+        if (!(node instanceof DirectiveNode)) {
+            return false;
+        }
+
+        DirectiveNode directive = (DirectiveNode) node;
+
+        if (!PARALLEL_DIRECTIVES.contains(directive.getName())) {
+            return true;
+        }
+
+        return directive.getBody().stream().anyMatch(NodeEvaluator::changesRoot)
+            || directive.getSections()
+            .stream()
+            .flatMap(s -> s.getBody().stream())
+            .anyMatch(NodeEvaluator::changesRoot);
+    }
+
+    private class GroupEvaluation implements Callable<Void> {
+
+        private final DependencyGraph graph;
+        private final List<Integer> group;
+        private final BufferedGyroUI ui;
+        private final ClassLoader classLoader;
+        private final List<Integer> deferred = new ArrayList<>();
+        private Throwable error;
+
+        public GroupEvaluation(DependencyGraph graph, List<Integer> group, GyroUI ui, ClassLoader classLoader) {
+            this.graph = graph;
+            this.group = group;
+            this.ui = ui != null ? new BufferedGyroUI(ui) : null;
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        public Void call() {
+            Thread thread = Thread.currentThread();
+            ClassLoader oldClassLoader = thread.getContextClassLoader();
+
+            thread.setContextClassLoader(classLoader);
+            GyroCore.pushUi(ui);
+
+            try {
+                evaluateStatements(graph, group, deferred);
+
+            } catch (RuntimeException | Error e) {
+                error = e;
+
+            } finally {
+                GyroCore.popUi();
+                thread.setContextClassLoader(oldClassLoader);
+            }
+
+            return null;
+        }
+
     }
 
     public void addTypeNode(Node top, Node node) {
         if (node instanceof ResourceNode) {
-            typeNodes.computeIfAbsent(((ResourceNode) node).getType(), k -> new HashSet<>()).add(top);
+            String type = ((ResourceNode) node).getType();
+
+            if (typesByNode.computeIfAbsent(top, k -> ConcurrentHashMap.newKeySet()).add(type)) {
+                pendingTypes.merge(type, 1, Integer::sum);
+            }
         }
 
         if (node instanceof BlockNode) {
@@ -338,21 +641,52 @@ public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeExceptio
     }
 
     public void evaluateBody(List<Node> body, Scope scope) {
-        Defer.execute(body, i -> visit(i, scope));
+        Defer.execute(body, i -> visitDeferrable(i, scope));
+    }
+
+    private void visitDeferrable(Node node, Scope scope) {
+        RootScope.pushEvaluating(scope);
+
+        try {
+            visit(node, scope);
+
+        } catch (Defer error) {
+            if (deferrals != null) {
+                deferrals.merge(node, 1, Integer::sum);
+            }
+
+            throw error;
+
+        } finally {
+            RootScope.popEvaluating();
+        }
     }
 
     private void removeTypeNode(Node node) {
-        if (typeNodes != null) {
-            for (Iterator<Set<Node>> i = typeNodes.values().iterator(); i.hasNext(); ) {
-                Set<Node> nodes = i.next();
+        if (typesByNode == null) {
+            return;
+        }
 
-                nodes.remove(node);
+        Set<String> types = typesByNode.remove(node);
 
-                if (nodes.isEmpty()) {
-                    i.remove();
-                }
+        if (types != null) {
+            for (String type : types) {
+                pendingTypes.computeIfPresent(type, (t, count) -> count > 1 ? count - 1 : null);
+            }
+        }
+    }
+
+    @Override
+    public Object visit(Node node, Scope scope) {
+        if (compiler != null) {
+            ExpressionCompiler.Expression expression = compiler.compile(node);
+
+            if (expression != null) {
+                return expression.evaluate(this, scope);
             }
         }
+
+        return node.accept(this, scope);
     }
 
     @Override
@@ -407,19 +741,7 @@ public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeExceptio
 
     @Override
     public Object visitFile(FileNode node, Scope scope) {
-        RootScope rootScope = scope.getRootScope();
-        List<FileScope> fileScopes = rootScope.getFileScopes();
-        String file = node.getFile();
-
-        FileScope fileScope = fileScopes.stream()
-            .filter(f -> f.getFile().equals(file))
-            .findFirst()
-            .orElse(null);
-
-        if (fileScope == null) {
-            fileScope = new FileScope(rootScope, file);
-            fileScopes.add(fileScope);
-        }
+        FileScope fileScope = scope.getRootScope().getOrCreateFileScope(node.getFile());
 
         evaluateBody(node.getBody(), fileScope);
         removeTypeNode(node);
@@ -584,14 +906,7 @@ public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeExceptio
 
     @Override
     public Object visitBinary(BinaryNode node, Scope scope) {
-        String operator = node.getOperator();
-        BiFunction<Object, Object, Object> function = BINARY_FUNCTIONS.get(operator);
-
-        if (function == null) {
-            throw new GyroException(String.format(
-                "@|bold %s|@ is not a valid binary operator!",
-                operator));
-        }
+        BiFunction<Object, Object, Object> function = getBinaryFunction(node.getOperator());
 
         removeTypeNode(node);
 
@@ -673,6 +988,10 @@ public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeExceptio
             .map(v -> visit(v, scope))
             .collect(Collectors.toList());
 
+        return resolveReference(node, scope, arguments);
+    }
+
+    Object resolveReference(ReferenceNode node, Scope scope, List<Object> arguments) {
         if (arguments.isEmpty()) {
             removeTypeNode(node);
             return null;
@@ -691,6 +1010,10 @@ public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeExceptio
             ReferenceResolver resolver = root.getSettings(ReferenceSettings.class).getResolver(referenceName);
 
             if (resolver != null) {
+
+                // Resolvers can look up anything, e.g. by querying a cloud provider.
+                root.recordLookup("*");
+
                 try {
                     removeTypeNode(node);
                     return resolveFilters(node, scope, resolver.resolve(scope, arguments));
@@ -710,20 +1033,13 @@ public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeExceptio
                 }
 
                 if (resourceName.endsWith("*")) {
-                    if (typeNodes != null && typeNodes.containsKey(referenceName)) {
+                    if (pendingTypes != null && pendingTypes.containsKey(referenceName)) {
                         throw new WildcardDefer(node, referenceName);
                     }
 
-                    Stream<Resource> s = root.findResources()
-                        .stream()
-                        .filter(r -> referenceName.equals(DiffableType.getInstance(r.getClass()).getName()));
-
-                    if (!resourceName.equals("*")) {
-                        String prefix = resourceName.substring(0, resourceName.length() - 1);
-                        s = s.filter(r -> DiffableInternals.getName(r).startsWith(prefix));
-                    }
-
-                    value = s.collect(Collectors.toList());
+                    value = root.findResourcesByType(
+                        referenceName,
+                        resourceName.substring(0, resourceName.length() - 1));
 
                 } else {
                     Resource resource = root.findResource(referenceName + "::" + resourceName);
@@ -784,4 +1100,22 @@ public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeExceptio
         return node.getValue();
     }
 
+    // The accessors are kept with each class rather than in a map with weak keys, since they refer back to the class,
+    // and a plugin class loader could never be collected otherwise.
+    private static class AccessorsByClass extends ClassValue<LoadingCache<String, Optional<MethodHandle>>> {
+
+        @Override
+        protected LoadingCache<String, Optional<MethodHandle>> computeValue(Class<?> aClass) {
+            return CacheBuilder.newBuilder()
+                .build(new CacheLoader<String, Optional<MethodHandle>>() {
+
+                    @Override
+                    public Optional<MethodHandle> load(String key) {
+                        return findAccessor(aClass, key);
+                    }
+                });
+        }
+
+    }
+
 }
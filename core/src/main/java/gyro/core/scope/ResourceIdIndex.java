@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import gyro.core.resource.DiffableField;
+import gyro.core.resource.Resource;
+
+// Resources by their IDs for one class, valid until one of the file scopes that it was built from changes. IDs can
+// also be set without going through the file scopes, e.g. when the resources are created or refreshed, so the
+// resources that didn't have one yet are checked on every lookup, and a lookup that finds a resource whose ID has
+// changed since, or doesn't find one at all, falls back to a scan. The index is rebuilt if the scan finds anything
+// that it missed.
+class ResourceIdIndex {
+
+    private final List<FileScope> scopes;
+    private final long[] modifications;
+    private final DiffableField idField;
+    private final List<? extends Resource> resources;
+    private final Map<Object, Integer> positionsById = new HashMap<>();
+    private final List<Integer> unidentified = new ArrayList<>();
+    private volatile boolean stale;
+
+    public ResourceIdIndex(List<FileScope> scopes, DiffableField idField, List<? extends Resource> resources) {
+        this.scopes = scopes;
+        this.modifications = getModifications(scopes);
+        this.idField = idField;
+        this.resources = resources;
+
+        for (int i = 0, size = resources.size(); i < size; i++) {
+            Object id = idField.getValue(resources.get(i));
+
+            if (id == null) {
+                unidentified.add(i);
+
+            } else {
+                positionsById.putIfAbsent(id, i);
+            }
+        }
+    }
+
+    private static long[] getModifications(List<FileScope> scopes) {
+        long[] modifications = new long[scopes.size()];
+
+        for (int i = 0; i < modifications.length; i++) {
+            modifications[i] = scopes.get(i).getResourceModifications();
+        }
+
+        return modifications;
+    }
+
+    public boolean isCurrent(List<FileScope> scopes) {
+        if (stale || scopes.size() != this.scopes.size()) {
+            return false;
+        }
+
+        for (int i = 0, size = scopes.size(); i < size; i++) {
+            if (scopes.get(i) != this.scopes.get(i) || scopes.get(i).getResourceModifications() != modifications[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public Resource find(Object id) {
+        Integer position = positionsById.get(id);
+
+        if (position != null && !id.equals(idField.getValue(resources.get(position)))) {
+            stale = true;
+            return scan(id);
+        }
+
+        for (Integer i : unidentified) {
+            if (position != null && i > position) {
+                break;
+            }
+
+            Resource resource = resources.get(i);
+
+            if (id.equals(idField.getValue(resource))) {
+                return resource;
+            }
+        }
+
+        if (position != null) {
+            return resources.get(position);
+        }
+
+        Resource resource = scan(id);
+
+        if (resource != null) {
+            stale = true;
+        }
+
+        return resource;
+    }
+
+    private Resource scan(Object id) {
+        return resources.stream()
+            .filter(r -> id.equals(idField.getValue(r)))
+            .findFirst()
+            .orElse(null);
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import gyro.core.resource.DiffableType;
+import gyro.core.resource.Resource;
+
+// Keeps track of the resources stored under their primary keys in a file scope so that RootScope can find them by
+// type, name prefix or class without going through every value. Positions follow the insertion order of the values so
+// that the results are in the same order as iterating over the file scope. Resources are indexed by the type and the
+// name in their keys rather than their current names, and the primary keys are checked again on every lookup, so that
+// renaming a resource takes it out of (or puts it back into) the results without re-indexing.
+class ResourceIndex {
+
+    private final Map<String, Object> values;
+    private final Map<String, Long> positions = new HashMap<>();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, NavigableMap<String, String>> keysByType = new HashMap<>();
+    private final Map<Class<?>, Set<String>> keysByClass = new HashMap<>();
+    private long nextPosition;
+    private long modifications;
+
+    public ResourceIndex(Map<String, Object> values) {
+        this.values = values;
+    }
+
+    public long getModifications() {
+        return modifications;
+    }
+
+    public void invalidate() {
+        modifications++;
+    }
+
+    public void put(String key, Object oldValue, Object newValue) {
+        positions.putIfAbsent(key, nextPosition++);
+        unindex(key);
+
+        if (newValue instanceof Resource) {
+            Resource resource = (Resource) newValue;
+            String type = DiffableType.getInstance(resource.getClass()).getName();
+
+            if (key.startsWith(type + "::")) {
+                Entry entry = new Entry(resource, type, key.substring(type.length() + 2));
+
+                entries.put(key, entry);
+                keysByType.computeIfAbsent(entry.type, t -> new TreeMap<>()).put(entry.name, key);
+                keysByClass.computeIfAbsent(resource.getClass(), c -> new LinkedHashSet<>()).add(key);
+            }
+        }
+
+        if (oldValue instanceof Resource || newValue instanceof Resource) {
+            modifications++;
+        }
+    }
+
+    public void remove(String key, Object oldValue) {
+        positions.remove(key);
+        unindex(key);
+
+        if (oldValue instanceof Resource) {
+            modifications++;
+        }
+    }
+
+    public void clear() {
+        positions.clear();
+        entries.clear();
+        keysByType.clear();
+        keysByClass.clear();
+        modifications++;
+    }
+
+    private void unindex(String key) {
+        Entry entry = entries.remove(key);
+
+        if (entry != null) {
+            keysByType.get(entry.type).remove(entry.name);
+            keysByClass.get(entry.resource.getClass()).remove(key);
+        }
+    }
+
+    public List<Resource> findAll() {
+        return resolve(entries.keySet());
+    }
+
+    public List<Resource> findByType(String type, String prefix) {
+        NavigableMap<String, String> keysByName = keysByType.get(type);
+
+        if (keysByName == null) {
+            return new ArrayList<>();
+
+        } else if (prefix.isEmpty()) {
+            return resolve(keysByName.values());
+        }
+
+        List<String> keys = new ArrayList<>();
+
+        for (Map.Entry<String, String> e : keysByName.tailMap(prefix, true).entrySet()) {
+            if (!e.getKey().startsWith(prefix)) {
+                break;
+            }
+
+            keys.add(e.getValue());
+        }
+
+        return resolve(keys);
+    }
+
+    public List<Resource> findByClass(Class<?> resourceClass) {
+        List<String> keys = new ArrayList<>();
+
+        keysByClass.forEach((c, k) -> {
+            if (resourceClass.isAssignableFrom(c)) {
+                keys.addAll(k);
+            }
+        });
+
+        return resolve(keys);
+    }
+
+    private List<Resource> resolve(Collection<String> keys) {
+        List<String> sorted = new ArrayList<>(keys);
+        List<Resource> resources = new ArrayList<>(sorted.size());
+
+        sorted.sort(Comparator.comparing(positions::get));
+
+        for (String key : sorted) {
+            Resource resource = entries.get(key).resource;
+
+            // Values can also be removed through the map views without going through the file scope.
+            if (values.get(key) == resource && resource.primaryKey().equals(key)) {
+                resources.add(resource);
+            }
+        }
+
+        return resources;
+    }
+
+    private static class Entry {
+
+        public final Resource resource;
+        public final String type;
+        public final String name;
+
+        public Entry(Resource resource, String type, String name) {
+            this.resource = resource;
+            this.type = type;
+            this.name = name;
+        }
+
+    }
+
+}
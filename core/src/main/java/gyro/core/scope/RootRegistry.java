@@ -0,0 +1,159 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.google.common.collect.ImmutableList;
+import com.psddev.dari.util.Converter;
+import gyro.core.LogDirectiveProcessor;
+import gyro.core.PrintDirectiveProcessor;
+import gyro.core.auth.CredentialsDirectiveProcessor;
+import gyro.core.auth.CredentialsPlugin;
+import gyro.core.auth.UsesCredentialsDirectiveProcessor;
+import gyro.core.backend.FileBackendDirectiveProcessor;
+import gyro.core.backend.FileBackendPlugin;
+import gyro.core.command.HighlanderDirectiveProcessor;
+import gyro.core.control.ForDirectiveProcessor;
+import gyro.core.control.IfDirectiveProcessor;
+import gyro.core.diff.ChangeProcessor;
+import gyro.core.diff.ChangeSettings;
+import gyro.core.diff.DiffDirectiveProcessor;
+import gyro.core.diff.GlobalChangePlugin;
+import gyro.core.directive.DirectivePlugin;
+import gyro.core.directive.DirectiveSettings;
+import gyro.core.finder.FinderPlugin;
+import gyro.core.plugin.Plugin;
+import gyro.core.plugin.PluginDirectiveProcessor;
+import gyro.core.plugin.PluginSettings;
+import gyro.core.reference.FinderReferenceResolver;
+import gyro.core.reference.ReferencePlugin;
+import gyro.core.reference.ReferenceSettings;
+import gyro.core.repo.RepositoryDirectiveProcessor;
+import gyro.core.resource.DescriptionDirectiveProcessor;
+import gyro.core.resource.Diffable;
+import gyro.core.resource.ExtendsDirectiveProcessor;
+import gyro.core.resource.ModificationChangeProcessor;
+import gyro.core.resource.ModificationPlugin;
+import gyro.core.resource.Resource;
+import gyro.core.resource.ResourcePlugin;
+import gyro.core.resource.TypeDescriptionDirectiveProcessor;
+import gyro.core.resource.WaitDirectiveProcessor;
+import gyro.core.scope.converter.DiffableScopeToDiffable;
+import gyro.core.scope.converter.IdObjectToResource;
+import gyro.core.scope.converter.IterableToOne;
+import gyro.core.scope.converter.ResourceToIdObject;
+import gyro.core.virtual.VirtualDirectiveProcessor;
+import gyro.core.workflow.CreateDirectiveProcessor;
+import gyro.core.workflow.DefineDirectiveProcessor;
+import gyro.core.workflow.DeleteDirectiveProcessor;
+import gyro.core.workflow.ReplaceDirectiveProcessor;
+import gyro.core.workflow.RestoreRootProcessor;
+import gyro.core.workflow.UpdateDirectiveProcessor;
+
+// Everything that a root scope starts out with. None of it depends on the root, so it's built once and shared instead
+// of being registered again for every root, e.g. for the state, for each workflow stage or for each virtual resource.
+class RootRegistry {
+
+    private static final RootRegistry INSTANCE = new RootRegistry();
+
+    private final Converter converter;
+    private final List<Plugin> plugins;
+    private final List<ChangeProcessor> changeProcessors;
+    private final DirectiveSettings directiveSettings;
+    private final ReferenceSettings referenceSettings;
+    private final List<RootProcessor> rootProcessors;
+
+    private RootRegistry() {
+        converter = new Converter();
+
+        converter.setThrowError(true);
+        converter.putAllStandardFunctions();
+        converter.putInheritableFunction(DiffableScope.class, Diffable.class, new DiffableScopeToDiffable());
+        converter.putInheritableFunction(Iterable.class, Object.class, new IterableToOne());
+        converter.putInheritableFunction(Object.class, Resource.class, new IdObjectToResource());
+        converter.putInheritableFunction(Resource.class, Object.class, new ResourceToIdObject());
+
+        plugins = ImmutableList.of(
+            new CredentialsPlugin(),
+            new DirectivePlugin(),
+            new FileBackendPlugin(),
+            new FinderPlugin(),
+            new GlobalChangePlugin(),
+            new ModificationPlugin(),
+            new ReferencePlugin(),
+            new ResourcePlugin(),
+            new RootPlugin());
+
+        changeProcessors = ImmutableList.of(
+            new ModificationChangeProcessor());
+
+        directiveSettings = new DirectiveSettings();
+
+        Stream.of(
+            CreateDirectiveProcessor.class,
+            CredentialsDirectiveProcessor.class,
+            DeleteDirectiveProcessor.class,
+            DescriptionDirectiveProcessor.class,
+            DiffDirectiveProcessor.class,
+            EvaluationDirectiveProcessor.class,
+            ExtendsDirectiveProcessor.class,
+            FileBackendDirectiveProcessor.class,
+            ForDirectiveProcessor.class,
+            IfDirectiveProcessor.class,
+            HighlanderDirectiveProcessor.class,
+            ReplaceDirectiveProcessor.class,
+            RepositoryDirectiveProcessor.class,
+            PluginDirectiveProcessor.class,
+            TypeDescriptionDirectiveProcessor.class,
+            UpdateDirectiveProcessor.class,
+            UsesCredentialsDirectiveProcessor.class,
+            VirtualDirectiveProcessor.class,
+            DefineDirectiveProcessor.class,
+            WaitDirectiveProcessor.class,
+            PrintDirectiveProcessor.class,
+            LogDirectiveProcessor.class)
+            .forEach(directiveSettings::addProcessor);
+
+        referenceSettings = new ReferenceSettings();
+
+        Stream.of(
+            FinderReferenceResolver.class)
+            .forEach(referenceSettings::addResolver);
+
+        rootProcessors = ImmutableList.of(
+            new RestoreRootProcessor());
+    }
+
+    public static RootRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    public Converter getConverter() {
+        return converter;
+    }
+
+    public void register(RootScope root) {
+        root.getSettings(PluginSettings.class).getPlugins().addAll(plugins);
+        root.getSettings(ChangeSettings.class).getProcessors().addAll(changeProcessors);
+        root.getSettings(DirectiveSettings.class).putAllProcessors(directiveSettings);
+        root.getSettings(ReferenceSettings.class).putAllResolvers(referenceSettings);
+        root.getSettings(RootSettings.class).getProcessors().addAll(rootProcessors);
+    }
+
+}
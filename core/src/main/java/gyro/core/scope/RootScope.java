@@ -16,154 +16,151 @@
 
 package gyro.core.scope;
 
-import java.io.IOException;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableSet;
-import com.psddev.dari.util.Converter;
+import com.psddev.dari.util.ThreadLocalStack;
 import gyro.core.FileBackend;
 import gyro.core.GyroException;
 import gyro.core.GyroInputStream;
 import gyro.core.GyroOutputStream;
-import gyro.core.LogDirectiveProcessor;
-import gyro.core.PrintDirectiveProcessor;
-import gyro.core.auth.CredentialsDirectiveProcessor;
-import gyro.core.auth.CredentialsPlugin;
-import gyro.core.auth.UsesCredentialsDirectiveProcessor;
-import gyro.core.backend.FileBackendDirectiveProcessor;
-import gyro.core.backend.FileBackendPlugin;
-import gyro.core.command.HighlanderDirectiveProcessor;
 import gyro.core.command.HighlanderSettings;
-import gyro.core.control.ForDirectiveProcessor;
-import gyro.core.control.IfDirectiveProcessor;
-import gyro.core.diff.ChangeSettings;
-import gyro.core.diff.GlobalChangePlugin;
-import gyro.core.directive.DirectivePlugin;
 import gyro.core.directive.DirectiveSettings;
-import gyro.core.finder.FinderPlugin;
-import gyro.core.plugin.PluginDirectiveProcessor;
-import gyro.core.plugin.PluginSettings;
-import gyro.core.reference.FinderReferenceResolver;
-import gyro.core.reference.ReferencePlugin;
 import gyro.core.reference.ReferenceSettings;
-import gyro.core.repo.RepositoryDirectiveProcessor;
-import gyro.core.resource.DescriptionDirectiveProcessor;
 import gyro.core.resource.Diffable;
 import gyro.core.resource.DiffableField;
 import gyro.core.resource.DiffableInternals;
 import gyro.core.resource.DiffableType;
-import gyro.core.resource.ExtendsDirectiveProcessor;
-import gyro.core.resource.ModificationChangeProcessor;
-import gyro.core.resource.ModificationPlugin;
+import gyro.core.resource.ModificationField;
 import gyro.core.resource.Resource;
-import gyro.core.resource.ResourcePlugin;
-import gyro.core.resource.TypeDescriptionDirectiveProcessor;
-import gyro.core.resource.WaitDirectiveProcessor;
-import gyro.core.scope.converter.DiffableScopeToDiffable;
-import gyro.core.scope.converter.IdObjectToResource;
-import gyro.core.scope.converter.IterableToOne;
-import gyro.core.scope.converter.ResourceToIdObject;
 import gyro.core.validation.ValidationError;
 import gyro.core.validation.ValidationErrorException;
-import gyro.core.virtual.VirtualDirectiveProcessor;
-import gyro.core.workflow.CreateDirectiveProcessor;
-import gyro.core.workflow.DefineDirectiveProcessor;
-import gyro.core.workflow.DeleteDirectiveProcessor;
-import gyro.core.workflow.ReplaceDirectiveProcessor;
-import gyro.core.workflow.RestoreRootProcessor;
-import gyro.core.workflow.UpdateDirectiveProcessor;
+import gyro.core.workflow.WorkflowSettings;
+import gyro.lang.SyntaxErrorException;
+import gyro.lang.SyntaxErrorsException;
 import gyro.lang.ast.Node;
+import gyro.lang.ast.PairNode;
 import gyro.lang.ast.block.FileNode;
-import gyro.parser.antlr4.GyroParser;
-import gyro.util.Bug;
+import gyro.lang.ast.block.ResourceNode;
+import gyro.lang.ast.value.ValueNode;
+import gyro.util.LayeredMap;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class RootScope extends FileScope {
 
-    private final Converter converter;
+    private static final Logger LOGGER = LoggerFactory.getLogger(RootScope.class);
+
+    // The converter is shared by all roots, so the conversion functions that need a root find it here.
+    private static final ThreadLocalStack<RootScope> CONVERTING = new ThreadLocalStack<>();
+
+    // The lookups are recorded against the file that's being evaluated in the current thread.
+    private static final ThreadLocalStack<Scope> EVALUATING = new ThreadLocalStack<>();
+
     private final NodeEvaluator evaluator;
     private final FileBackend backend;
     private final RootScope current;
     private final Set<String> loadFiles;
-    private final List<FileScope> fileScopes = new ArrayList<>();
+    private final FileNodeCache fileNodeCache;
+    private final List<FileScope> fileScopes = new CopyOnWriteArrayList<>();
+    private final Map<String, FileScope> fileScopesByFile = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ResourceIdIndex> resourceIdIndexes = new ConcurrentHashMap<>();
+    private final RootScope base;
+    private final Map<String, FileNode> fileNodes = new ConcurrentHashMap<>();
+    private volatile FileLookups lookups;
+    private RootScope evaluation;
+    private Set<String> changedKeys;
 
     public RootScope(String file, FileBackend backend, RootScope current, Set<String> loadFiles) {
-        super(null, file);
+        this(file, backend, current, loadFiles, current != null ? current.getFileNodeCache() : new FileNodeCache());
+    }
 
-        converter = new Converter();
+    public RootScope(
+        String file,
+        FileBackend backend,
+        RootScope current,
+        Set<String> loadFiles,
+        FileNodeCache fileNodeCache) {
 
-        converter.setThrowError(true);
-        converter.putAllStandardFunctions();
-        converter.putInheritableFunction(DiffableScope.class, Diffable.class, new DiffableScopeToDiffable());
-        converter.putInheritableFunction(Iterable.class, Object.class, new IterableToOne());
-        converter.putInheritableFunction(Object.class, Resource.class, new IdObjectToResource(this));
-        converter.putInheritableFunction(Resource.class, Object.class, new ResourceToIdObject());
+        super(null, file);
 
         this.evaluator = new NodeEvaluator();
         this.backend = backend;
         this.current = current;
         this.loadFiles = loadFiles != null ? ImmutableSet.copyOf(loadFiles) : ImmutableSet.of();
+        this.fileNodeCache = fileNodeCache;
+        this.base = this;
 
-        Stream.of(
-            new CredentialsPlugin(),
-            new DirectivePlugin(),
-            new FileBackendPlugin(),
-            new FinderPlugin(),
-            new GlobalChangePlugin(),
-            new ModificationPlugin(),
-            new ReferencePlugin(),
-            new ResourcePlugin(),
-            new RootPlugin())
-            .forEach(p -> getSettings(PluginSettings.class).getPlugins().add(p));
-
-        Stream.of(
-            new ModificationChangeProcessor())
-            .forEach(p -> getSettings(ChangeSettings.class).getProcessors().add(p));
-
-        Stream.of(
-            CreateDirectiveProcessor.class,
-            CredentialsDirectiveProcessor.class,
-            DeleteDirectiveProcessor.class,
-            DescriptionDirectiveProcessor.class,
-            ExtendsDirectiveProcessor.class,
-            FileBackendDirectiveProcessor.class,
-            ForDirectiveProcessor.class,
-            IfDirectiveProcessor.class,
-            HighlanderDirectiveProcessor.class,
-            ReplaceDirectiveProcessor.class,
-            RepositoryDirectiveProcessor.class,
-            PluginDirectiveProcessor.class,
-            TypeDescriptionDirectiveProcessor.class,
-            UpdateDirectiveProcessor.class,
-            UsesCredentialsDirectiveProcessor.class,
-            VirtualDirectiveProcessor.class,
-            DefineDirectiveProcessor.class,
-            WaitDirectiveProcessor.class,
-            PrintDirectiveProcessor.class,
-            LogDirectiveProcessor.class)
-            .forEach(p -> getSettings(DirectiveSettings.class).addProcessor(p));
-
-        Stream.of(
-            FinderReferenceResolver.class)
-            .forEach(r -> getSettings(ReferenceSettings.class).addResolver(r));
-
-        Stream.of(
-            new RestoreRootProcessor())
-            .forEach(p -> getSettings(RootSettings.class).getProcessors().add(p));
-
+        RootRegistry.getInstance().register(this);
         put("ENV", System.getenv());
     }
 
+    /**
+     * Creates an overlay of the given {@code parent} for evaluating something in isolation, e.g. an instance of a
+     * virtual resource. The overlay shares the parent's backend and settings, except that it has its own copies of
+     * the directive processors and reference resolvers that plugins can add to. It reads the parent's values without
+     * copying them, and keeps its own values and file scopes to itself. Removing one of the parent's values only hides
+     * it in the overlay.
+     *
+     * @param parent Nonnull.
+     * @param current Nullable.
+     */
+    public RootScope(RootScope parent, RootScope current) {
+        super(null, parent.getFile(), overlay(parent));
+
+        this.evaluator = new NodeEvaluator();
+        this.backend = parent.backend;
+        this.current = current;
+        this.loadFiles = parent.loadFiles;
+        this.fileNodeCache = parent.fileNodeCache;
+        this.base = parent.base;
+
+        putAllSettings(parent);
+        copyRegistrations();
+    }
+
+    // Plugins can register more directive processors and reference resolvers while a root is evaluated, so a root
+    // that shares its settings with another one needs its own copies of those, or the registrations would leak.
+    private void copyRegistrations() {
+        DirectiveSettings directiveSettings = new DirectiveSettings();
+        ReferenceSettings referenceSettings = new ReferenceSettings();
+
+        directiveSettings.putAllProcessors(getSettings(DirectiveSettings.class));
+        referenceSettings.putAllResolvers(getSettings(ReferenceSettings.class));
+        replaceSettings(DirectiveSettings.class, directiveSettings);
+        replaceSettings(ReferenceSettings.class, referenceSettings);
+    }
+
+    private static Map<String, Object> overlay(RootScope parent) {
+        return Collections.synchronizedMap(LayeredMap.overlay(
+            new LinkedHashMap<>(),
+            Collections.unmodifiableMap(parent)));
+    }
+
     public NodeEvaluator getEvaluator() {
         return evaluator;
     }
@@ -180,10 +177,281 @@ public class RootScope extends FileScope {
         return loadFiles;
     }
 
+    public FileNodeCache getFileNodeCache() {
+        return fileNodeCache;
+    }
+
     public List<FileScope> getFileScopes() {
         return fileScopes;
     }
 
+    public FileScope getOrCreateFileScope(String file) {
+        FileScope fileScope = fileScopesByFile.get(file);
+
+        if (fileScope != null) {
+            return fileScope;
+        }
+
+        synchronized (fileScopes) {
+
+            // File scopes can also be added directly to the list.
+            fileScope = fileScopes.stream()
+                .filter(f -> f.getFile().equals(file))
+                .findFirst()
+                .orElse(null);
+
+            if (fileScope == null) {
+                fileScope = new FileScope(this, file);
+                fileScopes.add(fileScope);
+            }
+
+            fileScopesByFile.put(file, fileScope);
+            return fileScope;
+        }
+    }
+
+    /**
+     * Copies this root scope, along with its file scopes and resources, so that the copy can be changed, e.g. by
+     * saving the state, without evaluating the files again or changing this one.
+     *
+     * <p>The scopes that the resources were evaluated in, e.g. inside {@code @for}, are copied too, and the references
+     * to resources and their subresources are pointed at the copies, including the ones in lists, sets and maps. Other
+     * values, e.g. variables that hold lists or maps without any resources in them, are shared with this root rather
+     * than copied, so they shouldn't be changed in place.</p>
+     *
+     * @return Nonnull.
+     */
+    public RootScope snapshot() {
+        RootScope snapshot = new RootScope(getFile(), backend, current, loadFiles, fileNodeCache);
+
+        snapshot.putAllSettings(this);
+        snapshot.copyRegistrations();
+        copyScopes(this, snapshot, getFileScopes(), true, Function.identity());
+        return snapshot;
+    }
+
+    // Copies the given file scopes of the source root, and the values of the root itself if asked, into the target
+    // root. The references to the resources that aren't copied along are replaced using the given function.
+    private static void copyScopes(
+        RootScope source,
+        RootScope target,
+        List<FileScope> fileScopes,
+        boolean copyRoot,
+        Function<Diffable, Diffable> replaceOther) {
+
+        Map<Scope, Scope> scopes = new IdentityHashMap<>();
+        Map<Diffable, Diffable> copies = new IdentityHashMap<>();
+
+        scopes.put(source, target);
+
+        for (FileScope fileScope : fileScopes) {
+            FileScope targetFileScope = target.getOrCreateFileScope(fileScope.getFile());
+
+            targetFileScope.putAllSettings(fileScope);
+            scopes.put(fileScope, targetFileScope);
+        }
+
+        if (copyRoot) {
+            copyValues(source, target, scopes, copies);
+        }
+
+        for (FileScope fileScope : fileScopes) {
+            copyValues(fileScope, scopes.get(fileScope), scopes, copies);
+        }
+
+        // Point the references between the resources at their copies.
+        Function<Diffable, Diffable> replace = d -> {
+            Diffable copy = copies.get(d);
+
+            return copy != null ? copy : replaceOther.apply(d);
+        };
+
+        for (Map.Entry<Scope, Scope> entry : scopes.entrySet()) {
+            if (copyRoot || entry.getKey() != source) {
+                replaceReferences(entry.getValue(), replace);
+            }
+        }
+
+        for (Diffable copy : copies.values()) {
+            replaceReferences(copy, replace);
+        }
+    }
+
+    private static void copyValues(
+        Scope source,
+        Scope target,
+        Map<Scope, Scope> scopes,
+        Map<Diffable, Diffable> copies) {
+
+        for (Map.Entry<String, Object> entry : source.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+
+            if (value instanceof Resource && ((Resource) value).primaryKey().equals(key)) {
+                Resource resource = (Resource) value;
+                Scope parent = DiffableInternals.getScope(resource).getParent();
+                Resource copy = DiffableInternals.copy(resource, copyScope(parent, target, scopes));
+
+                copies.put(resource, copy);
+                putCopies(resource, copy, copies);
+                value = copy;
+            }
+
+            target.put(key, value);
+
+            Node location = source.getLocation(key);
+
+            if (location != null) {
+                target.putLocation(key, location);
+            }
+        }
+    }
+
+    // Scopes between a resource and its file scope, e.g. the ones that hold the @for variables, are copied only once
+    // so that the resources from the same iteration still share them. Scopes that can't be copied this way, e.g. the
+    // file scope of a virtual resource in its own root, are replaced by the file scope that the resource is in.
+    private static Scope copyScope(Scope scope, Scope target, Map<Scope, Scope> scopes) {
+        Scope copy = scopes.get(scope);
+
+        if (copy != null) {
+            return copy;
+
+        } else if (scope == null || scope.getClass() != Scope.class) {
+            return target;
+        }
+
+        Scope parent = scope.getParent();
+        Map<String, Object> values = new LinkedHashMap<>();
+
+        // Nested scopes usually show the values from their parents too, so only the ones of their own are copied.
+        for (Map.Entry<String, Object> entry : scope.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+
+            if (parent == null || !parent.containsKey(key) || parent.get(key) != value) {
+                values.put(key, value);
+            }
+        }
+
+        copy = new Scope(copyScope(parent, target, scopes), values);
+
+        copy.putAllSettings(scope);
+        scopes.put(scope, copy);
+        return copy;
+    }
+
+    // Subresources are copied in the same order along with their parents.
+    private static void putCopies(Diffable diffable, Diffable copy, Map<Diffable, Diffable> copies) {
+        for (DiffableField field : DiffableType.getInstance(diffable).getFields()) {
+            if (!field.shouldBeDiffed()) {
+                continue;
+            }
+
+            Object value = field.getValue(diffable);
+            Object copyValue = field.getValue(copy);
+
+            if (value instanceof Collection && copyValue instanceof Collection) {
+                Iterator<?> i = ((Collection<?>) value).iterator();
+                Iterator<?> j = ((Collection<?>) copyValue).iterator();
+
+                while (i.hasNext() && j.hasNext()) {
+                    putCopy(i.next(), j.next(), copies);
+                }
+
+            } else {
+                putCopy(value, copyValue, copies);
+            }
+        }
+    }
+
+    private static void putCopy(Object value, Object copy, Map<Diffable, Diffable> copies) {
+        if (value instanceof Diffable && copy instanceof Diffable) {
+            copies.put((Diffable) value, (Diffable) copy);
+            putCopies((Diffable) value, (Diffable) copy, copies);
+        }
+    }
+
+    // Goes through the scope itself rather than its entries so that the file scopes keep their indexes up to date.
+    private static void replaceReferences(Scope scope, Function<Diffable, Diffable> replace) {
+        for (Map.Entry<String, Object> entry : new ArrayList<>(scope.entrySet())) {
+            Object value = entry.getValue();
+            Object replaced = replaceReference(value, replace);
+
+            if (replaced != value) {
+                scope.put(entry.getKey(), replaced);
+            }
+        }
+    }
+
+    private static void replaceReferences(Diffable diffable, Function<Diffable, Diffable> replace) {
+        replaceReferences(DiffableInternals.getScope(diffable), replace);
+
+        for (DiffableField field : DiffableType.getInstance(diffable).getFields()) {
+            if (field instanceof ModificationField) {
+                continue;
+            }
+
+            Object value = field.getValue(diffable);
+
+            if (field.shouldBeDiffed()) {
+                (value instanceof Collection ? ((Collection<?>) value).stream() : Stream.of(value))
+                    .filter(Diffable.class::isInstance)
+                    .map(Diffable.class::cast)
+                    .forEach(d -> replaceReferences(d, replace));
+
+            } else {
+                Object replaced = replaceReference(value, replace);
+
+                if (replaced != value) {
+                    field.setValue(diffable, replaced);
+                }
+            }
+        }
+    }
+
+    // Returns the given value itself unless there's a reference to replace somewhere in it.
+    private static Object replaceReference(Object value, Function<Diffable, Diffable> replace) {
+        if (value instanceof Diffable) {
+            return replace.apply((Diffable) value);
+
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            List<Object> replaced = new ArrayList<>(collection.size());
+            boolean changed = false;
+
+            for (Object item : collection) {
+                Object replacedItem = replaceReference(item, replace);
+
+                replaced.add(replacedItem);
+                changed |= replacedItem != item;
+            }
+
+            if (!changed) {
+                return value;
+            }
+
+            return value instanceof Set ? new LinkedHashSet<>(replaced) : replaced;
+
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            Map<Object, Object> replaced = new LinkedHashMap<>();
+            boolean changed = false;
+
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                Object item = entry.getValue();
+                Object replacedItem = replaceReference(item, replace);
+
+                replaced.put(entry.getKey(), replacedItem);
+                changed |= replacedItem != item;
+            }
+
+            return changed ? replaced : value;
+
+        } else {
+            return value;
+        }
+    }
+
     public Stream<String> list() {
         try {
             return backend.list();
@@ -199,6 +467,17 @@ public class RootScope extends FileScope {
         return new GyroInputStream(backend, file);
     }
 
+    public ByteBuffer readBuffer(String file) {
+        try {
+            return backend.readBuffer(file);
+
+        } catch (Exception error) {
+            throw new GyroException(
+                String.format("Can't read from @|bold %s|@ in @|bold %s|@!", file, backend),
+                error);
+        }
+    }
+
     public GyroOutputStream openOutput(String file) {
         return new GyroOutputStream(backend, file);
     }
@@ -214,8 +493,67 @@ public class RootScope extends FileScope {
         }
     }
 
+    // Overlays convert through the root that they were created from, so that e.g. IDs resolve against all the
+    // resources instead of only the ones in the overlay.
     public Object convertValue(Type returnType, Object object) {
-        return converter.convert(returnType, object);
+        CONVERTING.push(base);
+
+        try {
+            return RootRegistry.getInstance().getConverter().convert(returnType, object);
+
+        } finally {
+            CONVERTING.pop();
+        }
+    }
+
+    /**
+     * Returns the root that's converting a value in the current thread through {@link #convertValue}, which is the
+     * root that an overlay was created from rather than the overlay itself.
+     *
+     * @return Nullable.
+     */
+    public static RootScope getConverting() {
+        return CONVERTING.get();
+    }
+
+    static void pushEvaluating(Scope scope) {
+        EVALUATING.push(scope);
+    }
+
+    static void popEvaluating() {
+        EVALUATING.pop();
+    }
+
+    // Records the given key, which can end with * to match all the keys that start with the rest of it, against the
+    // file that's being evaluated if this is its root or the current one, so that the file can be reused later.
+    void recordLookup(String key) {
+        Scope scope = EVALUATING.get();
+        FileScope file = scope != null ? scope.getFileScope() : null;
+
+        if (file == null) {
+            return;
+        }
+
+        RootScope root = file.getRootScope().base;
+        FileLookups rootLookups = root.lookups;
+
+        if (rootLookups == null) {
+            return;
+
+        } else if (base == root) {
+            rootLookups.add(file.getFile(), key, false);
+
+        } else if (root.current != null && base == root.current.base) {
+            rootLookups.add(file.getFile(), key, true);
+        }
+    }
+
+    private List<FileScope> getResourceScopes() {
+        List<FileScope> scopes = new ArrayList<>();
+
+        scopes.add(this);
+        scopes.addAll(getFileScopes());
+        return scopes;
     }
 
     public List<Resource> findResources() {
@@ -223,13 +561,11 @@ public class RootScope extends FileScope {
     }
 
     public List<Resource> findResourcesIn(Set<String> diffFiles) {
-        Stream<Resource> stream = Stream.concat(Stream.of(this), getFileScopes().stream())
-            .map(Map::entrySet)
-            .flatMap(Collection::stream)
-            .filter(e -> e.getValue() instanceof Resource)
-            .filter(e -> ((Resource) e.getValue()).primaryKey().equals(e.getKey()))
-            .map(Entry::getValue)
-            .map(Resource.class::cast);
+        recordLookup("*");
+
+        Stream<Resource> stream = getResourceScopes().stream()
+            .map(FileScope::listResources)
+            .flatMap(Collection::stream);
 
         if (diffFiles != null && !diffFiles.isEmpty()) {
             stream = stream.filter(r -> diffFiles.contains(DiffableInternals.getScope(r).getFileScope().getFile()));
@@ -238,14 +574,27 @@ public class RootScope extends FileScope {
         return stream.collect(Collectors.toList());
     }
 
+    public List<Resource> findResourcesByType(String type, String namePrefix) {
+        recordLookup(type + "::" + namePrefix + "*");
+
+        return getResourceScopes().stream()
+            .map(s -> s.listResourcesByType(type, namePrefix))
+            .flatMap(Collection::stream)
+            .collect(Collectors.toList());
+    }
+
     public <T extends Resource> Stream<T> findResourcesByClass(Class<T> resourceClass) {
-        return findResources()
-            .stream()
-            .filter(resourceClass::isInstance)
+        recordLookup("*");
+
+        return getResourceScopes().stream()
+            .map(s -> s.listResourcesByClass(resourceClass))
+            .flatMap(Collection::stream)
             .map(resourceClass::cast);
     }
 
     public Resource findResource(String name) {
+        recordLookup(name);
+
         return Stream.concat(Stream.of(this), getFileScopes().stream())
             .map(s -> s.get(name))
             .filter(Resource.class::isInstance)
@@ -259,6 +608,8 @@ public class RootScope extends FileScope {
             return null;
         }
 
+        recordLookup("*");
+
         DiffableType<T> type = DiffableType.getInstance(resourceClass);
         DiffableField idField = type.getIdField();
 
@@ -266,9 +617,16 @@ public class RootScope extends FileScope {
             throw new GyroException(String.format("Unable to find @Id on a getter in %s", resourceClass.getSimpleName()));
         }
 
-        return findResourcesByClass(resourceClass)
-            .filter(r -> id.equals(idField.getValue(r)))
-            .findFirst()
+        List<FileScope> scopes = getResourceScopes();
+        ResourceIdIndex index = resourceIdIndexes.get(resourceClass);
+
+        if (index == null || !index.isCurrent(scopes)) {
+            index = new ResourceIdIndex(scopes, idField, findResourcesByClass(resourceClass).collect(Collectors.toList()));
+            resourceIdIndexes.put(resourceClass, index);
+        }
+
+        return Optional.ofNullable(index.find(id))
+            .map(resourceClass::cast)
             .orElseGet(() -> type.newExternal(this, id));
     }
 
@@ -287,7 +645,57 @@ public class RootScope extends FileScope {
         return nodes;
     }
 
+    /**
+     * Records the resources that each file looks up while this root is evaluated, so that its evaluation can be kept
+     * and passed to {@link #evaluate(RootScope)} later. Must be called before evaluating.
+     *
+     * <p>The evaluation itself is only kept if this root defines any workflows, since only a workflow makes the roots
+     * evaluate again, and it's a copy of this root as it is right after its files are evaluated, before the root
+     * processors and anything else can change it. Roots that can't know that yet, e.g. the current one, are given
+     * their copy later through {@link #keepEvaluation(RootScope)}.</p>
+     */
+    public void keepEvaluation() {
+        lookups = new FileLookups();
+    }
+
+    /**
+     * Keeps the given copy of this root, along with the resources that each file looked up, as its evaluation.
+     *
+     * @param copy Nonnull. Must be taken before anything changed this root after it was evaluated, and shouldn't be
+     * changed afterwards.
+     */
+    public void keepEvaluation(RootScope copy) {
+        Preconditions.checkNotNull(copy);
+
+        if (lookups != null) {
+            evaluation = copy;
+            evaluation.fileNodes.putAll(fileNodes);
+            evaluation.lookups = lookups.copy();
+        }
+    }
+
+    public boolean isEvaluationKept() {
+        return evaluation != null;
+    }
+
     public void evaluate() {
+        evaluate(null);
+    }
+
+    /**
+     * Evaluates the files like {@link #evaluate()}, but reuses the resources from the given {@code previous} root,
+     * e.g. after a workflow changed some of the state files, for the files that haven't changed since and that didn't
+     * look up anything that might have. A file is evaluated again if any of the resources that it looked up by name,
+     * type or class, in this root or in the current one, were in a file that's evaluated again, or might be defined by
+     * one now. Files that contain more than resources with literal names and variables are always evaluated again for
+     * their side effects, and nothing is reused if the root file changed or looked up any resources.
+     *
+     * <p>Only the lookups that go through this class while a file is being evaluated in the same thread are tracked,
+     * and references through the {@link gyro.core.reference.ReferenceResolver}s count as looking up everything.</p>
+     *
+     * @param previous Nullable. Nothing is reused unless its evaluation was kept, see {@link #keepEvaluation()}.
+     */
+    public void evaluate(RootScope previous) {
         List<Node> nodes = load();
         Set<String> existingFiles;
 
@@ -295,6 +703,8 @@ public class RootScope extends FileScope {
             existingFiles = s.collect(Collectors.toCollection(LinkedHashSet::new));
         }
 
+        List<String> files;
+
         if (getSettings(HighlanderSettings.class).isHighlander()) {
             int s = loadFiles.size();
 
@@ -305,17 +715,37 @@ public class RootScope extends FileScope {
                 throw new GyroException("Can't specify more than one file in highlander mode!");
 
             } else {
-                Optional.of(loadFiles.iterator().next())
+                files = Optional.of(loadFiles.iterator().next())
                     .filter(existingFiles::contains)
-                    .ifPresent(f -> evaluateFile(f, nodes::add));
+                    .map(Collections::singletonList)
+                    .orElse(Collections.emptyList());
             }
 
         } else {
-            existingFiles.forEach(f -> evaluateFile(f, nodes::add));
+            files = new ArrayList<>(existingFiles);
+        }
+
+        List<FileNode> fileNodes = parseFiles(files);
+        RootScope reusable = previous != null ? previous.evaluation : null;
+
+        if (reusable != null) {
+            Set<String> reusableFiles = findReusableFiles(reusable, fileNodes);
+
+            if (!reusableFiles.isEmpty()) {
+                reuseFiles(reusable, fileNodes, reusableFiles);
+                fileNodes.removeIf(n -> reusableFiles.contains(n.getFile()));
+            }
+
+            LOGGER.debug("Reused {} files", reusableFiles.size());
         }
 
+        nodes.addAll(fileNodes);
         evaluator.evaluate(this, nodes);
 
+        if (lookups != null && !getSettings(WorkflowSettings.class).getWorkflows().isEmpty()) {
+            keepEvaluation(snapshot());
+        }
+
         getSettings(RootSettings.class).getProcessors().forEach(p -> {
             try {
                 p.process(this);
@@ -328,16 +758,234 @@ public class RootScope extends FileScope {
         });
     }
 
+    // Files can be reused if they haven't changed and don't need to be evaluated again for their side effects, and
+    // they didn't look up any of the resources that might have changed, which are the ones in the files that are
+    // evaluated again and the ones that those files might define now.
+    private Set<String> findReusableFiles(RootScope reusable, List<FileNode> nodes) {
+        String rootFile = getFile();
+
+        changedKeys = null;
+
+        if (fileNodes.get(rootFile) != reusable.fileNodes.get(rootFile)
+            || reusable.lookups.hasKeys(rootFile)
+            || (current == null) != (reusable.current == null)) {
+
+            return Collections.emptySet();
+        }
+
+        Map<String, FileNode> nodesByFile = new LinkedHashMap<>();
+        Map<String, FileScope> reusableScopes = new LinkedHashMap<>();
+        Set<String> changedCurrentKeys = current != null ? current.changedKeys : Collections.emptySet();
+        Set<String> evaluated = new HashSet<>();
+        Set<String> inputsChanged = new HashSet<>();
+
+        nodes.forEach(n -> nodesByFile.put(n.getFile(), n));
+        reusable.getFileScopes().forEach(s -> reusableScopes.put(s.getFile(), s));
+        changedKeys = new HashSet<>();
+
+        Set<String> files = new LinkedHashSet<>(reusableScopes.keySet());
+
+        files.addAll(nodesByFile.keySet());
+
+        for (String file : files) {
+            FileNode node = nodesByFile.get(file);
+
+            if (node != reusable.fileNodes.get(file)) {
+                evaluateAgain(file, true, node, reusableScopes.get(file), evaluated, inputsChanged);
+
+            } else if (node != null && findDefinedKeys(node) == null) {
+                evaluateAgain(file, false, node, reusableScopes.get(file), evaluated, inputsChanged);
+            }
+        }
+
+        // Evaluating a file again can affect the ones that looked up its resources, and so on.
+        for (boolean more = true; more; ) {
+            more = false;
+
+            for (Map.Entry<String, FileNode> entry : nodesByFile.entrySet()) {
+                String file = entry.getKey();
+
+                if (!inputsChanged.contains(file)
+                    && reusable.lookups.matches(file, changedKeys, changedCurrentKeys)) {
+
+                    evaluateAgain(file, true, entry.getValue(), reusableScopes.get(file), evaluated, inputsChanged);
+                    more = true;
+                }
+            }
+        }
+
+        return nodesByFile.keySet()
+            .stream()
+            .filter(f -> !evaluated.contains(f) && reusableScopes.containsKey(f))
+            .collect(Collectors.toSet());
+    }
+
+    // The resources in a file that's evaluated again are new, so anything that looked them up has to be evaluated
+    // again too, and if anything that the file itself looked up might have changed, so might the resources in it.
+    private void evaluateAgain(
+        String file,
+        boolean inputChanged,
+        FileNode node,
+        FileScope reusableScope,
+        Set<String> evaluated,
+        Set<String> inputsChanged) {
+
+        if (evaluated.add(file) && reusableScope != null && changedKeys != null) {
+            for (Map.Entry<String, Object> entry : reusableScope.entrySet()) {
+                Object value = entry.getValue();
+
+                if (value instanceof Resource && ((Resource) value).primaryKey().equals(entry.getKey())) {
+                    changedKeys.add(entry.getKey());
+                }
+            }
+        }
+
+        if (inputChanged && inputsChanged.add(file) && node != null && changedKeys != null) {
+            Set<String> keys = findDefinedKeys(node);
+
+            if (keys != null) {
+                changedKeys.addAll(keys);
+
+            } else {
+                changedKeys = null;
+            }
+        }
+    }
+
+    // Keys of the resources that the given file defines, or null if it contains anything else than those resources
+    // and variables, e.g. a directive that can change the root or a resource with a computed name.
+    private Set<String> findDefinedKeys(FileNode node) {
+        Set<String> keys = new HashSet<>();
+
+        for (Node item : node.getBody()) {
+            if (item instanceof PairNode) {
+                continue;
+
+            } else if (item instanceof ResourceNode) {
+                ResourceNode resourceNode = (ResourceNode) item;
+                String type = resourceNode.getType();
+                Node name = resourceNode.getName();
+                Object value = get(type);
+
+                if (name instanceof ValueNode
+                    && value instanceof Class
+                    && Resource.class.isAssignableFrom((Class<?>) value)) {
+
+                    keys.add(type + "::" + ((ValueNode) name).getValue());
+                    continue;
+                }
+            }
+
+            return null;
+        }
+
+        return keys;
+    }
+
+    private void reuseFiles(RootScope reusable, List<FileNode> nodes, Set<String> files) {
+        RootScope reusableCurrent = reusable.current;
+
+        // File scopes are created in the same order as when all the files are evaluated.
+        nodes.forEach(n -> getOrCreateFileScope(n.getFile()));
+
+        copyScopes(
+            reusable,
+            this,
+            reusable.getFileScopes()
+                .stream()
+                .filter(s -> files.contains(s.getFile()))
+                .collect(Collectors.toList()),
+            false,
+            d -> {
+
+                // Values copied from the current resources point to the ones in the current root that was rebuilt.
+                if (current != null && reusableCurrent != null && d instanceof Resource) {
+                    DiffableScope scope = DiffableInternals.getScope(d);
+
+                    if (scope != null && scope.getRootScope().base == reusableCurrent.base) {
+                        Resource resource = current.findResource(((Resource) d).primaryKey());
+
+                        if (resource != null) {
+                            return resource;
+                        }
+                    }
+                }
+
+                return d;
+            });
+    }
+
+    // Files don't depend on each other until they're evaluated, so they're all read and parsed concurrently first.
+    private List<FileNode> parseFiles(List<String> files) {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+
+        List<FileParse> parses = files.stream()
+            .filter(f -> !StringUtils.isBlank(f))
+            .map(f -> new FileParse(f, Thread.currentThread().getContextClassLoader()))
+            .collect(Collectors.toList());
+
+        if (parses.size() > 1) {
+            ForkJoinPool pool = new ForkJoinPool(Math.min(parses.size(), Runtime.getRuntime().availableProcessors()));
+
+            try {
+                pool.invokeAll(parses);
+
+            } finally {
+                pool.shutdown();
+            }
+
+        } else {
+            parses.forEach(FileParse::call);
+        }
+
+        LOGGER.debug("Parsed {} files in {}", parses.size(), stopwatch);
+
+        List<FileNode> nodes = new ArrayList<>();
+        List<SyntaxErrorException> syntaxErrors = new ArrayList<>();
+
+        for (FileParse parse : parses) {
+            Throwable error = parse.error;
+
+            if (error == null) {
+                nodes.add(parse.node);
+                fileNodes.put(parse.file, parse.node);
+
+            } else if (error instanceof SyntaxErrorException) {
+                syntaxErrors.add((SyntaxErrorException) error);
+
+            } else {
+                throw new GyroException(
+                    String.format("Can't parse @|bold %s|@ in @|bold %s|@!", parse.file, this.backend),
+                    error);
+            }
+        }
+
+        int s = syntaxErrors.size();
+
+        if (s == 1) {
+            throw new GyroException(
+                String.format("Can't parse @|bold %s|@ in @|bold %s|@!", syntaxErrors.get(0).getFile(), this.backend),
+                syntaxErrors.get(0));
+
+        } else if (s > 1) {
+            throw new GyroException(
+                String.format("Can't parse @|bold %s|@ files in @|bold %s|@!", s, this.backend),
+                new SyntaxErrorsException(syntaxErrors));
+        }
+
+        return nodes;
+    }
+
     private void evaluateFile(String file, Consumer<FileNode> consumer) {
         if (StringUtils.isBlank(file)) {
             return;
         }
 
-        try (GyroInputStream input = openInput(file)) {
-            consumer.accept((FileNode) Node.parse(input, file, GyroParser::file));
+        try {
+            FileNode node = fileNodeCache.parse(readBuffer(file), file, backend);
 
-        } catch (IOException error) {
-            throw new Bug(error);
+            fileNodes.put(file, node);
+            consumer.accept(node);
 
         } catch (Exception error) {
             throw new GyroException(
@@ -368,4 +1016,39 @@ public class RootScope extends FileScope {
         }
     }
 
+    private class FileParse implements Callable<Void> {
+
+        private final String file;
+        private final ClassLoader classLoader;
+        private FileNode node;
+        private Throwable error;
+
+        public FileParse(String file, ClassLoader classLoader) {
+            this.file = file;
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        public Void call() {
+            Thread thread = Thread.currentThread();
+            ClassLoader oldClassLoader = thread.getContextClassLoader();
+
+            // File backends can come from plugins.
+            thread.setContextClassLoader(classLoader);
+
+            try {
+                node = fileNodeCache.parse(readBuffer(file), file, backend);
+
+            } catch (Throwable error) {
+                this.error = error;
+
+            } finally {
+                thread.setContextClassLoader(oldClassLoader);
+            }
+
+            return null;
+        }
+
+    }
+
 }
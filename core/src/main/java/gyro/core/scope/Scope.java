@@ -17,15 +17,17 @@
 package gyro.core.scope;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.google.common.base.Preconditions;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
+import com.google.common.cache.AbstractLoadingCache;
 import com.google.common.cache.LoadingCache;
 import gyro.core.Reflections;
 import gyro.lang.ast.Node;
@@ -33,21 +35,15 @@ import gyro.util.MapWrapper;
 
 public class Scope extends MapWrapper<String, Object> {
 
-    private final Scope parent;
-    private final Map<Object, String> names = new IdentityHashMap<>();
-    private final Map<String, Node> locations = new HashMap<>();
+    private Scope parent;
 
-    private final LoadingCache<Class<? extends Settings>, Settings> settingsByClass = CacheBuilder.newBuilder()
-        .build(new CacheLoader<Class<? extends Settings>, Settings>() {
+    // Scopes are created for every block and map, and most never use these, so they're only created when needed.
+    private Map<Object, String> names;
+    private Map<String, Node> locations;
 
-            @Override
-            public Settings load(Class<? extends Settings> settingsClass) {
-                Settings settings = Reflections.newInstance(settingsClass);
-                settings.scope = Scope.this;
-
-                return settings;
-            }
-        });
+    // Most scopes only have a few settings, if any, so they're kept as pairs of classes and instances in an array
+    // that's searched linearly. The array is replaced instead of changed so that it can be read without locking.
+    private volatile Object[] settings;
 
     /**
      * @param parent Nullable.
@@ -69,6 +65,11 @@ public class Scope extends MapWrapper<String, Object> {
         return parent;
     }
 
+    // Moves this scope under the given parent, see FileScope#adopt.
+    void setParent(Scope parent) {
+        this.parent = parent;
+    }
+
     @SuppressWarnings("unchecked")
     public <S extends Scope> S getClosest(Class<S> scopeClass) {
         for (Scope s = this; s != null; s = s.getParent()) {
@@ -118,28 +119,185 @@ public class Scope extends MapWrapper<String, Object> {
 
         list.add(value);
         put(key, list);
+
+        if (names == null) {
+            names = new IdentityHashMap<>(4);
+        }
+
         names.put(value, name);
     }
 
     public String getName(Object value) {
-        return names.get(value);
+        return names != null ? names.get(value) : null;
     }
 
     public Node getLocation(String key) {
-        return locations.get(key);
+        return locations != null ? locations.get(key) : null;
     }
 
     public void putLocation(String key, Node node) {
+        if (locations == null) {
+            locations = new HashMap<>();
+        }
+
         locations.put(key, node);
     }
 
     @SuppressWarnings("unchecked")
     public <S extends Settings> S getSettings(Class<S> settingsClass) {
-        return (S) settingsByClass.getUnchecked(Preconditions.checkNotNull(settingsClass));
+        Preconditions.checkNotNull(settingsClass);
+
+        Settings settings = findSettings(settingsClass);
+
+        if (settings == null) {
+            synchronized (this) {
+                settings = findSettings(settingsClass);
+
+                if (settings == null) {
+                    settings = Reflections.newInstance(settingsClass);
+                    settings.scope = this;
+
+                    putSettings(settingsClass, settings);
+                }
+            }
+        }
+
+        return (S) settings;
     }
 
+    /**
+     * @deprecated Use {@link #getSettings} and {@link #putAllSettings} instead. The returned cache only adapts them,
+     * and its {@link LoadingCache#asMap} is a copy.
+     */
+    @Deprecated
     public LoadingCache<Class<? extends Settings>, Settings> getSettingsByClass() {
-        return settingsByClass;
+        return new SettingsByClass();
+    }
+
+    /**
+     * Copies all settings from the given {@code scope}, e.g. when this scope takes its place.
+     *
+     * @param scope Nonnull.
+     */
+    public void putAllSettings(Scope scope) {
+        putAllSettings(scope, null);
+    }
+
+    // Skips the settings of the given class, e.g. ones that point back to what the other scope belongs to.
+    @SuppressWarnings("unchecked")
+    void putAllSettings(Scope scope, Class<? extends Settings> excludedClass) {
+        Object[] other = Preconditions.checkNotNull(scope).settings;
+
+        if (other == null) {
+            return;
+        }
+
+        synchronized (this) {
+            for (int i = 0, length = other.length; i < length; i += 2) {
+                if (other[i] != excludedClass) {
+                    putSettings((Class<? extends Settings>) other[i], (Settings) other[i + 1]);
+                }
+            }
+        }
+    }
+
+    // Replaces the settings of the given class, e.g. with a copy that can be changed without changing the original.
+    <S extends Settings> void replaceSettings(Class<S> settingsClass, S value) {
+        Preconditions.checkNotNull(settingsClass);
+        Preconditions.checkNotNull(value);
+
+        synchronized (this) {
+            value.scope = this;
+            putSettings(settingsClass, value);
+        }
+    }
+
+    private Settings findSettings(Class<? extends Settings> settingsClass) {
+        Object[] s = settings;
+
+        if (s != null) {
+            for (int i = 0, length = s.length; i < length; i += 2) {
+                if (s[i] == settingsClass) {
+                    return (Settings) s[i + 1];
+                }
+            }
+        }
+
+        return null;
+    }
+
+    // Must be called while synchronized on this scope.
+    private void putSettings(Class<? extends Settings> settingsClass, Settings value) {
+        Object[] s = settings;
+
+        if (s == null) {
+            settings = new Object[] { settingsClass, value };
+            return;
+        }
+
+        for (int i = 0, length = s.length; i < length; i += 2) {
+            if (s[i] == settingsClass) {
+                Object[] copy = s.clone();
+
+                copy[i + 1] = value;
+                settings = copy;
+                return;
+            }
+        }
+
+        Object[] copy = Arrays.copyOf(s, s.length + 2);
+
+        copy[s.length] = settingsClass;
+        copy[s.length + 1] = value;
+        settings = copy;
+    }
+
+    // Adapts the settings to the cache that used to hold them.
+    private class SettingsByClass extends AbstractLoadingCache<Class<? extends Settings>, Settings> {
+
+        @Override
+        public Settings get(Class<? extends Settings> settingsClass) {
+            return getSettings(settingsClass);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Settings getIfPresent(Object settingsClass) {
+            return settingsClass instanceof Class ? findSettings((Class<? extends Settings>) settingsClass) : null;
+        }
+
+        @Override
+        public void put(Class<? extends Settings> settingsClass, Settings value) {
+            Preconditions.checkNotNull(settingsClass);
+            Preconditions.checkNotNull(value);
+
+            synchronized (Scope.this) {
+                putSettings(settingsClass, value);
+            }
+        }
+
+        @Override
+        public long size() {
+            Object[] s = settings;
+
+            return s != null ? s.length / 2 : 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ConcurrentMap<Class<? extends Settings>, Settings> asMap() {
+            ConcurrentMap<Class<? extends Settings>, Settings> map = new ConcurrentHashMap<>();
+            Object[] s = settings;
+
+            if (s != null) {
+                for (int i = 0, length = s.length; i < length; i += 2) {
+                    map.put((Class<? extends Settings>) s[i], (Settings) s[i + 1]);
+                }
+            }
+
+            return map;
+        }
+
     }
 
 }
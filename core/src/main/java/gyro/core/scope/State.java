@@ -65,10 +65,15 @@ public class State {
     private final Map<String, String> newNames = new HashMap<>();
 
     public State(RootScope current, RootScope pending, boolean test) {
-        this.root = new RootScope(current.getFile(), current.getBackend(), null, current.getLoadFiles());
-
-        root.evaluate();
+        this(current, pending, test, true);
+    }
 
+    /**
+     * @param copy If {@code false}, the state takes over the given current root rather than a snapshot of it, e.g.
+     * when the root is already a snapshot that nothing else uses, so it shouldn't be changed afterwards.
+     */
+    public State(RootScope current, RootScope pending, boolean test, boolean copy) {
+        this.root = copy ? current.snapshot() : current;
         this.test = test;
 
         for (FileScope state : root.getFileScopes()) {
@@ -241,6 +246,12 @@ public class State {
 
         if (!configuredFields.isEmpty()) {
             body.add(toPairNode("_configured-fields", configuredFields, resource));
+
+            String fingerprint = diffable == resource ? DiffableInternals.computeFingerprint(resource) : null;
+
+            if (fingerprint != null) {
+                body.add(toPairNode("_fingerprint", fingerprint, resource));
+            }
         }
 
         body.addAll(DiffableInternals.getScope(diffable).getStateNodes());
@@ -27,6 +27,20 @@ public class IdObjectToResource implements ConversionFunction<Object, Resource>
 
     private final RootScope root;
 
+    /**
+     * Creates a function that finds the resources in the root that's converting the values, see
+     * {@link RootScope#getConverting}.
+     */
+    public IdObjectToResource() {
+        this(null);
+    }
+
+    /**
+     * @param root Nullable. If given, the resources are always found in it instead of the root that's converting the
+     * values.
+     * @deprecated Use {@link #IdObjectToResource()} so that the function can be shared by all roots.
+     */
+    @Deprecated
     public IdObjectToResource(RootScope root) {
         this.root = root;
     }
@@ -34,7 +48,8 @@ public class IdObjectToResource implements ConversionFunction<Object, Resource>
     @Override
     @SuppressWarnings("unchecked")
     public Resource convert(Converter converter, Type returnType, Object id) {
-        return root.findResourceById((Class<? extends Resource>) returnType, id);
+        return (root != null ? root : RootScope.getConverting())
+            .findResourceById((Class<? extends Resource>) returnType, id);
     }
 
 }
@@ -71,16 +71,7 @@ public class VirtualResourceVisitor extends ResourceVisitor {
     @Override
     public void visit(String name, Scope scope) {
         RootScope root = scope.getRootScope();
-
-        RootScope virtualRoot = new RootScope(
-            root.getFile(),
-            root.getBackend(),
-            new VirtualRootScope(root.getCurrent(), name),
-            root.getLoadFiles());
-
-        virtualRoot.getSettingsByClass().putAll(root.getSettingsByClass().asMap());
-        virtualRoot.putAll(root);
-
+        RootScope virtualRoot = new RootScope(root, new VirtualRootScope(root.getCurrent(), name));
         FileScope file = scope.getFileScope();
         FileScope virtualFile = new FileScope(virtualRoot, file.getFile());
 
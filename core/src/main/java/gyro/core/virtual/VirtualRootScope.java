@@ -16,18 +16,26 @@
 
 package gyro.core.virtual;
 
+import java.util.List;
+
 import gyro.core.resource.Resource;
+import gyro.core.scope.FileScope;
 import gyro.core.scope.RootScope;
 
 public class VirtualRootScope extends RootScope {
 
+    private final RootScope scope;
     private final String virtualName;
 
     public VirtualRootScope(RootScope scope, String virtualName) {
-        super(scope.getFile(), scope.getBackend(), null, scope.getLoadFiles());
+        super(scope, null);
+        this.scope = scope;
         this.virtualName = virtualName;
-        putAll(scope);
-        getFileScopes().addAll(scope.getFileScopes());
+    }
+
+    @Override
+    public List<FileScope> getFileScopes() {
+        return scope.getFileScopes();
     }
 
     @Override
@@ -101,8 +101,15 @@ public class Workflow {
 
     private RootScope copyCurrentRootScope() {
         RootScope current = root.getCurrent();
-        RootScope scope = new RootScope(current.getFile(), current.getBackend(), null, current.getLoadFiles());
-        scope.evaluate();
+        RootScope scope = new RootScope(
+            current.getFile(),
+            current.getBackend(),
+            null,
+            current.getLoadFiles(),
+            current.getFileNodeCache());
+
+        // Only the state files that the earlier stages changed, and the ones that depend on them, are evaluated again.
+        scope.evaluate(current);
         return scope;
     }
 
@@ -148,7 +155,7 @@ public class Workflow {
             ui.indent();
 
             try {
-                stage.execute(ui, state, currentResource, pendingResource, currentRoot, copyCurrentRootScope());
+                stage.execute(ui, state, currentResource, pendingResource, currentRoot, currentRoot.snapshot());
                 executedStages.add(stage.getName());
 
                 try (GyroOutputStream output = currentRoot.openOutput(Workflow.EXECUTION_FILE)) {
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BufferedGyroUITest {
+
+    GyroUI target;
+    BufferedGyroUI ui;
+
+    @BeforeEach
+    void beforeEach() {
+        target = mock(GyroUI.class);
+        ui = new BufferedGyroUI(target);
+    }
+
+    @Test
+    void nullTarget() {
+        assertThatNullPointerException().isThrownBy(() -> new BufferedGyroUI(null));
+    }
+
+    @Test
+    void replay() {
+        ui.write("foo");
+        ui.indent();
+        ui.write("bar");
+
+        verifyZeroInteractions(target);
+
+        ui.replay();
+
+        InOrder order = inOrder(target);
+
+        order.verify(target).write("foo");
+        order.verify(target).indent();
+        order.verify(target).write("bar");
+    }
+
+    @Test
+    void setVerbose() {
+        ui.write("foo");
+        ui.setVerbose(true);
+
+        assertThat(ui.isVerbose()).isTrue();
+        verify(target, never()).setVerbose(anyBoolean());
+
+        ui.replay();
+
+        InOrder order = inOrder(target);
+
+        order.verify(target).write("foo");
+        order.verify(target).setVerbose(true);
+    }
+
+    @Test
+    void readBoolean() {
+        when(target.readBoolean(any(), eq("bar"))).thenReturn(true);
+
+        ui.write("foo");
+
+        assertThat(ui.readBoolean(false, "bar")).isTrue();
+
+        InOrder order = inOrder(target);
+
+        order.verify(target).write("foo");
+        order.verify(target).readBoolean(false, "bar");
+
+        ui.replay();
+
+        verify(target, times(1)).write("foo");
+    }
+
+}
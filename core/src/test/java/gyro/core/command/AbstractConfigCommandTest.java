@@ -0,0 +1,104 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.command;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import gyro.core.FileBackend;
+import gyro.core.GyroCore;
+import gyro.core.GyroUI;
+import gyro.core.scope.RootScope;
+import gyro.core.scope.TestResource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AbstractConfigCommandTest {
+
+    Map<String, String> files;
+    List<String> output;
+
+    @BeforeEach
+    void beforeEach() {
+        GyroUI ui = mock(GyroUI.class);
+
+        files = new LinkedHashMap<>();
+        output = new ArrayList<>();
+
+        doAnswer(i -> {
+            Object[] arguments = i.getArguments();
+
+            output.add(String.format((String) arguments[0], Arrays.copyOfRange(arguments, 1, arguments.length)));
+            return null;
+        }).when(ui).write(anyString(), any());
+
+        doCallRealMethod().when(ui).indented(any());
+        GyroCore.pushUi(ui);
+    }
+
+    @AfterEach
+    void afterEach() {
+        GyroCore.popUi();
+    }
+
+    RootScope evaluate() throws Exception {
+        FileBackend backend = mock(FileBackend.class);
+        RootScope root = new RootScope("", backend, null, null);
+
+        when(backend.list()).thenAnswer(i -> new ArrayList<>(files.keySet()).stream());
+
+        when(backend.readBuffer(anyString())).thenAnswer(i -> ByteBuffer.wrap(
+            files.get(i.<String>getArgument(0)).getBytes(StandardCharsets.UTF_8)));
+
+        root.put("test::resource", TestResource.class);
+        root.getEvaluator().recordDeferrals();
+        root.evaluate();
+        return root;
+    }
+
+    @Test
+    void deferReport() throws Exception {
+        files.put("a.gyro", "foo: $(test::resource bar)\n");
+        files.put("b.gyro", "test::resource bar\nend\n");
+
+        AbstractConfigCommand.writeDeferReport(evaluate());
+
+        assertThat(output).contains("@|magenta ⧗ Deferral report:|@\n", "\n@|bold a.gyro|@\n");
+        assertThat(output).doesNotContain("\n@|bold b.gyro|@\n");
+        assertThat(output).anyMatch(l -> l.matches("@\\|bold \\d+\\|@ pass(es)? on line @\\|bold 1\\|@ .*\n"));
+    }
+
+    @Test
+    void deferReportEmpty() throws Exception {
+        files.put("a.gyro", "test::resource bar\nend\n");
+        files.put("b.gyro", "foo: $(test::resource bar)\n");
+
+        AbstractConfigCommand.writeDeferReport(evaluate());
+
+        assertThat(output).containsExactly("@|magenta ⧗ Deferral report:|@ nothing was deferred\n");
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.control;
+
+import gyro.core.FileBackend;
+import gyro.core.GyroException;
+import gyro.core.resource.DiffableInternals;
+import gyro.core.resource.Resource;
+import gyro.core.scope.DiffableScope;
+import gyro.core.scope.FileScope;
+import gyro.core.scope.RootScope;
+import gyro.core.scope.Scope;
+import gyro.core.scope.TestResource;
+import gyro.lang.ast.Node;
+import gyro.lang.ast.block.DirectiveNode;
+import gyro.parser.antlr4.GyroParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ForDirectiveProcessorTest {
+
+    ForDirectiveProcessor processor;
+    RootScope root;
+    FileScope scope;
+
+    @BeforeEach
+    void beforeEach() {
+        processor = new ForDirectiveProcessor();
+        root = new RootScope("", mock(FileBackend.class), null, null);
+        scope = root.getOrCreateFileScope("test.gyro");
+
+        root.put("test::resource", TestResource.class);
+    }
+
+    private DirectiveNode parse(String text) {
+        return (DirectiveNode) Node.parse(text, GyroParser::directive);
+    }
+
+    @Test
+    void sequential() {
+        processor.process(scope, parse("@for x -in [1, 2, 3]\n    y: $(x)\n@end"));
+
+        assertThat(scope.get("y")).isEqualTo(3L);
+    }
+
+    @Test
+    void parallel() {
+        processor.process(scope, parse("@for x -in [1, 2, 3] -parallel true\n    y: $(x)\n@end"));
+
+        assertThat(scope.get("y")).isEqualTo(3L);
+    }
+
+    @Test
+    void parallelOuterValues() {
+        Scope outer = new Scope(scope);
+
+        scope.put("a", "foo");
+        outer.put("b", "bar");
+        processor.process(outer, parse("@for x -in [1, 2] -parallel true\n    y: \"$(a)-$(b)-$(x)\"\n@end"));
+
+        assertThat(outer.get("y")).isEqualTo("foo-bar-2");
+        assertThat(scope.containsKey("y")).isFalse();
+    }
+
+    @Test
+    void parallelInsideDiffable() {
+        DiffableScope diffable = new DiffableScope(scope, null);
+
+        assertThatExceptionOfType(GyroException.class)
+            .isThrownBy(() -> processor.process(
+                diffable,
+                parse("@for x -in [1, 2] -parallel true\n    y: $(x)\n@end")));
+    }
+
+    @Test
+    void parallelResources() {
+        processor.process(scope, parse("@for x -in ['a', 'b'] -parallel true\n"
+            + "    test::resource $(x)\n    end\n"
+            + "@end"));
+
+        assertThat(scope.keySet()).containsExactly("test::resource::a", "test::resource::b");
+
+        Resource a = root.findResource("test::resource::a");
+
+        assertThat(a).isNotNull();
+        assertThat(DiffableInternals.getScope(a).getFileScope()).isSameAs(scope);
+        assertThat(scope.getLocation("test::resource::a")).isNotNull();
+    }
+
+    @Test
+    void parallelFileValues() {
+        scope.put("prefix", "foo");
+        processor.process(scope, parse("@for x -in ['a', 'b'] -parallel true\n"
+            + "    test::resource \"$(prefix)-$(x)\"\n    end\n"
+            + "@end"));
+
+        assertThat(scope.keySet()).containsExactly("prefix", "test::resource::foo-a", "test::resource::foo-b");
+    }
+
+    @Test
+    void parallelDuplicate() {
+        root.getEvaluator().visit(Node.parse("test::resource 'a'\nend", GyroParser::block), scope);
+
+        assertThatExceptionOfType(GyroException.class)
+            .isThrownBy(() -> processor.process(
+                scope,
+                parse("@for x -in ['a', 'b'] -parallel true\n    test::resource $(x)\n    end\n@end")))
+            .withMessageContaining("has been defined already");
+    }
+
+    @Test
+    void parallelDefer() {
+        processor.process(scope, parse("@for x, y -in {a: 'a', b: 'a'} -parallel true\n"
+            + "    test::resource $(x)\n    end\n"
+            + "    ref: $(test::resource $(y))\n"
+            + "@end"));
+
+        Resource a = root.findResource("test::resource::a");
+
+        assertThat(a).isNotNull();
+        assertThat(root.findResource("test::resource::b")).isNotNull();
+        assertThat(scope.get("ref")).isSameAs(a);
+        assertThat(DiffableInternals.getScope(a).getFileScope()).isSameAs(scope);
+    }
+
+}
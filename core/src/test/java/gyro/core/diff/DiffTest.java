@@ -0,0 +1,473 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.diff;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import gyro.core.FileBackend;
+import gyro.core.GyroCore;
+import gyro.core.GyroUI;
+import gyro.core.Namespace;
+import gyro.core.Type;
+import gyro.core.resource.Diffable;
+import gyro.core.resource.DiffableInternals;
+import gyro.core.resource.DiffableType;
+import gyro.core.resource.Resource;
+import gyro.core.resource.Updatable;
+import gyro.core.scope.DiffableScope;
+import gyro.core.scope.RootScope;
+import gyro.core.scope.State;
+import gyro.core.scope.TestResource;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DiffTest {
+
+    private List<String> diff(List<Resource> current, List<Resource> pending) {
+        Diff diff = new Diff(current, pending);
+
+        diff.diff();
+
+        return diff.getChanges()
+            .stream()
+            .map(c -> c.getClass().getSimpleName() + " " + DiffableInternals.getName(c.getDiffable()))
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    void single() {
+        assertThat(diff(Collections.emptyList(), Collections.singletonList(new TestResource("foo"))))
+            .containsExactly("Create foo");
+    }
+
+    @Test
+    void order() {
+        List<Resource> current = Arrays.asList(new TestResource("bar"), new TestResource("qux"));
+
+        List<Resource> pending = Arrays.asList(
+            new TestResource("foo"),
+            new TestResource("bar"),
+            new TestResource("baz"),
+            new TestResource("qux"));
+
+        assertThat(diff(current, pending)).containsExactly("Create foo", "Keep bar", "Create baz", "Keep qux");
+    }
+
+    @Test
+    void delete() {
+        List<Resource> current = Arrays.asList(new TestResource("foo"), new TestResource("bar"));
+
+        assertThat(diff(current, Collections.singletonList(new TestResource("bar"))))
+            .containsExactly("Keep bar", "Delete foo");
+    }
+
+    @Test
+    void changes() {
+        TestResource resource = new TestResource("foo");
+
+        diff(Collections.emptyList(), Arrays.asList(resource, new TestResource("bar")));
+
+        assertThat(DiffableInternals.getChange(resource)).isInstanceOf(Create.class);
+    }
+
+    @Test
+    void fingerprint() {
+        TestResource current = new TestResource("foo");
+        TestResource pending = new TestResource("foo");
+
+        DiffableInternals.updateFingerprint(current);
+
+        assertThat(diff(Collections.singletonList(current), Collections.singletonList(pending)))
+            .containsExactly("Keep foo");
+
+        assertThat(DiffableInternals.getChange(current)).isSameAs(DiffableInternals.getChange(pending));
+    }
+
+    @Test
+    void fingerprintSubresource() {
+        SubresourceResource current = new SubresourceResource("foo", "a");
+        SubresourceResource pending = new SubresourceResource("foo", "a");
+
+        DiffableInternals.updateFingerprint(current);
+        current.getSubresource().setValue("b");
+
+        assertThat(diff(Collections.singletonList(current), Collections.singletonList(pending)))
+            .containsExactly("Update foo");
+
+        assertThat(DiffableInternals.getChange(pending.getSubresource())).isInstanceOf(Update.class);
+    }
+
+    @Test
+    void fingerprintUnhashable() {
+        OpaqueResource current = new OpaqueResource("foo", new Opaque(1));
+        OpaqueResource pending = new OpaqueResource("foo", new Opaque(2));
+
+        DiffableInternals.updateFingerprint(current);
+
+        assertThat(DiffableInternals.getFingerprint(current)).isNull();
+        assertThat(DiffableInternals.computeFingerprint(pending)).isNull();
+
+        assertThat(diff(Collections.singletonList(current), Collections.singletonList(pending)))
+            .containsExactly("Update foo");
+    }
+
+    @Test
+    void fingerprintName() {
+        assertThat(DiffableInternals.computeFingerprint(new TestResource("foo")))
+            .isEqualTo(DiffableInternals.computeFingerprint(new TestResource("foo")))
+            .isNotEqualTo(DiffableInternals.computeFingerprint(new TestResource("bar")));
+    }
+
+    @Test
+    void fingerprintNull() {
+        ValueResource resource = new ValueResource();
+        ValueResource withNull = new ValueResource();
+
+        DiffableInternals.getConfiguredFields(resource).add("values");
+        DiffableInternals.getConfiguredFields(withNull).add("values");
+        resource.setValues(Collections.singletonList("a"));
+        withNull.setValues(Arrays.asList("a", null));
+
+        assertThat(DiffableInternals.computeFingerprint(withNull))
+            .isNotEqualTo(DiffableInternals.computeFingerprint(resource));
+    }
+
+    @Test
+    void fingerprintSaved() throws Exception {
+        Map<String, String> states = new HashMap<>();
+        Resource pending = evaluate(backend("test::value foo\n    value: 'bar'\n    values: ['a', 'b']\nend\n", null));
+        Resource saved = save(pending, states);
+
+        assertThat(DiffableInternals.getFingerprint(saved))
+            .isNotNull()
+            .isEqualTo(DiffableInternals.computeFingerprint(pending))
+            .isEqualTo(DiffableInternals.computeFingerprint(saved));
+
+        assertThat(diff(Collections.singletonList(saved), Collections.singletonList(pending)))
+            .containsExactly("Keep foo");
+    }
+
+    @Test
+    void fingerprintChanged() throws Exception {
+        Map<String, String> states = new HashMap<>();
+        Resource saved = save(evaluate(backend("test::value foo\n    value: 'bar'\nend\n", null)), states);
+        Resource pending = evaluate(backend("test::value foo\n    value: 'qux'\nend\n", null));
+
+        assertThat(diff(Collections.singletonList(saved), Collections.singletonList(pending)))
+            .containsExactly("Update foo");
+    }
+
+    @Test
+    void parallelOutput() {
+        GyroUI ui = mock(GyroUI.class);
+        RootScope root = new RootScope("", mock(FileBackend.class), null, null);
+
+        List<Resource> current = Arrays.asList(
+            new OutputResource("foo", "a"),
+            new OutputResource("bar", "fail"),
+            new OutputResource("qux", "c"));
+
+        List<Resource> pending = Arrays.asList(
+            newOutputResource(root, "foo", "a"),
+            newOutputResource(root, "bar", "b"),
+            newOutputResource(root, "qux", "c"));
+
+        root.getSettings(DiffSettings.class).setMode(DiffMode.PARALLEL);
+        GyroCore.pushUi(ui);
+
+        try {
+            assertThatIllegalStateException()
+                .isThrownBy(() -> diff(current, pending))
+                .withMessage("fail");
+
+        } finally {
+            GyroCore.popUi();
+        }
+
+        InOrder order = inOrder(ui);
+
+        order.verify(ui, times(2)).write("a");
+        order.verify(ui).write("fail");
+        verify(ui, never()).write("c");
+    }
+
+    // Parallel diffing is opt-in since it needs the resources to be thread-safe.
+    @Test
+    void sequential() {
+        RootScope root = new RootScope("", mock(FileBackend.class), null, null);
+        OutputResource foo = newOutputResource(root, "foo", "a");
+        OutputResource bar = newOutputResource(root, "bar", "b");
+        List<Resource> current = Arrays.asList(new OutputResource("foo", "a"), new OutputResource("bar", "a"));
+
+        GyroCore.pushUi(mock(GyroUI.class));
+
+        try {
+            diff(current, Arrays.asList(foo, bar));
+
+        } finally {
+            GyroCore.popUi();
+        }
+
+        assertThat(foo.thread).isSameAs(Thread.currentThread());
+        assertThat(bar.thread).isSameAs(Thread.currentThread());
+    }
+
+    private OutputResource newOutputResource(RootScope root, String name, String value) {
+        OutputResource resource = DiffableType.getInstance(OutputResource.class)
+            .newInternal(new DiffableScope(root, null), name);
+
+        resource.setValue(value);
+        DiffableInternals.getConfiguredFields(resource).add("value");
+        return resource;
+    }
+
+    // Saves the given resource to the state and reads it back.
+    private Resource save(Resource resource, Map<String, String> states) throws Exception {
+        FileBackend backend = backend(null, states);
+        RootScope current = new RootScope("", backend, null, null);
+        State state = new State(current, DiffableInternals.getScope(resource).getRootScope(), false);
+
+        state.update(new Keep(resource));
+        state.save();
+
+        return evaluate(backend);
+    }
+
+    private Resource evaluate(FileBackend backend) {
+        RootScope root = new RootScope("", backend, null, null);
+
+        root.put("test::value", ValueResource.class);
+        root.evaluate();
+
+        return root.findResource("test::value::foo");
+    }
+
+    // Backend with a single test.gyro file, either with the given text or the one saved in the given files.
+    private FileBackend backend(String text, Map<String, String> files) throws Exception {
+        Map<String, String> f = files != null ? files : new HashMap<>();
+        FileBackend backend = mock(FileBackend.class);
+
+        if (text != null) {
+            f.put("test.gyro", text);
+        }
+
+        when(backend.list()).thenAnswer(i -> f.keySet().stream().filter(n -> !n.endsWith("~")).sorted());
+
+        when(backend.openInput(anyString())).thenAnswer(i -> new ByteArrayInputStream(
+            f.get(i.<String>getArgument(0)).getBytes(StandardCharsets.UTF_8)));
+
+        when(backend.readBuffer(anyString())).thenCallRealMethod();
+
+        when(backend.openOutput(anyString())).thenAnswer(i -> new ByteArrayOutputStream() {
+
+            @Override
+            public void close() {
+                f.put(i.getArgument(0), new String(toByteArray(), StandardCharsets.UTF_8));
+            }
+        });
+
+        doAnswer(i -> f.remove(i.<String>getArgument(0))).when(backend).delete(anyString());
+
+        return backend;
+    }
+
+    @Namespace("test")
+    @Type("value")
+    public static class ValueResource extends Resource {
+
+        private String value;
+        private List<String> values;
+
+        @Updatable
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+
+        @Updatable
+        public List<String> getValues() {
+            return values;
+        }
+
+        public void setValues(List<String> values) {
+            this.values = values;
+        }
+
+        @Override
+        public boolean refresh() {
+            return false;
+        }
+
+        @Override
+        public void create(GyroUI ui, State state) {
+        }
+
+        @Override
+        public void update(GyroUI ui, State state, Resource current, Set<String> changedFieldNames) {
+        }
+
+        @Override
+        public void delete(GyroUI ui, State state) {
+        }
+
+    }
+
+    public static class SubresourceResource extends TestResource {
+
+        private ValueSubresource subresource;
+
+        public SubresourceResource() {
+        }
+
+        public SubresourceResource(String name, String value) {
+            super(name);
+
+            this.subresource = new ValueSubresource(value);
+            DiffableInternals.setName(subresource, "subresource");
+            DiffableInternals.getConfiguredFields(this).add("subresource");
+        }
+
+        @Updatable
+        public ValueSubresource getSubresource() {
+            return subresource;
+        }
+
+        public void setSubresource(ValueSubresource subresource) {
+            this.subresource = subresource;
+        }
+
+    }
+
+    public static class ValueSubresource extends Diffable {
+
+        private String value;
+
+        public ValueSubresource() {
+        }
+
+        public ValueSubresource(String value) {
+            this.value = value;
+            DiffableInternals.getConfiguredFields(this).add("value");
+        }
+
+        @Updatable
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String primaryKey() {
+            return "subresource";
+        }
+
+    }
+
+    public static class OpaqueResource extends TestResource {
+
+        private Opaque opaque;
+
+        public OpaqueResource() {
+        }
+
+        public OpaqueResource(String name, Opaque opaque) {
+            super(name);
+
+            this.opaque = opaque;
+            DiffableInternals.getConfiguredFields(this).add("opaque");
+        }
+
+        @Updatable
+        public Opaque getOpaque() {
+            return opaque;
+        }
+
+        public void setOpaque(Opaque opaque) {
+            this.opaque = opaque;
+        }
+
+    }
+
+    // Doesn't show its state in its toString.
+    public static class Opaque {
+
+        private final int state;
+
+        public Opaque(int state) {
+            this.state = state;
+        }
+
+        @Override
+        public String toString() {
+            return "opaque";
+        }
+
+    }
+
+    // Writes its value whenever it's read, and fails if the value is "fail".
+    public static class OutputResource extends TestResource {
+
+        private String value;
+        private Thread thread;
+
+        public OutputResource() {
+        }
+
+        public OutputResource(String name, String value) {
+            super(name);
+
+            this.value = value;
+            DiffableInternals.getConfiguredFields(this).add("value");
+        }
+
+        @Updatable
+        public String getValue() {
+            thread = Thread.currentThread();
+            GyroCore.ui().write(value);
+
+            if ("fail".equals(value)) {
+                throw new IllegalStateException(value);
+            }
+
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.resource;
+
+import gyro.core.scope.TestResource;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class DiffableTest {
+
+    @Test
+    void primaryKey() {
+        TestResource resource = new TestResource("foo");
+
+        assertThat(resource.primaryKey()).isEqualTo("test::resource::foo");
+    }
+
+    @Test
+    void primaryKeyAfterSetName() {
+        TestResource resource = new TestResource("foo");
+
+        resource.primaryKey();
+        DiffableInternals.setName(resource, "bar");
+
+        assertThat(resource.primaryKey()).isEqualTo("test::resource::bar");
+    }
+
+    @Test
+    void equalsAndHashCode() {
+        TestResource foo = new TestResource("foo");
+        TestResource other = new TestResource("foo");
+
+        assertThat(foo).isEqualTo(other);
+        assertThat(foo.hashCode()).isEqualTo(other.hashCode());
+        assertThat(foo).isNotEqualTo(new TestResource("bar"));
+    }
+
+    @Test
+    void equalsAfterSetName() {
+        TestResource foo = new TestResource("foo");
+        TestResource bar = new TestResource("bar");
+
+        foo.hashCode();
+        bar.hashCode();
+        DiffableInternals.setName(bar, "foo");
+
+        assertThat(foo).isEqualTo(bar);
+        assertThat(foo.hashCode()).isEqualTo(bar.hashCode());
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.resource;
+
+import java.util.Set;
+
+import gyro.core.FileBackend;
+import gyro.core.GyroUI;
+import gyro.core.scope.DiffableScope;
+import gyro.core.scope.RootScope;
+import gyro.core.scope.State;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DiffableTypeTest {
+
+    @Test
+    void getFields() {
+        DiffableType<FieldResource> type = DiffableType.getInstance(FieldResource.class);
+
+        assertThat(type.getFields()).isSameAs(type.getFields());
+    }
+
+    @Test
+    void getField() {
+        DiffableType<FieldResource> type = DiffableType.getInstance(FieldResource.class);
+
+        assertThat(type.getField("foo")).isSameAs(type.getFields().stream()
+            .filter(f -> f.getName().equals("foo"))
+            .findFirst()
+            .orElse(null));
+
+        assertThat(type.getField("missing")).isNull();
+    }
+
+    @Test
+    void modify() {
+        DiffableType<ModifiedResource> type = DiffableType.getInstance(ModifiedResource.class);
+
+        assertThat(type.getField("bar")).isNull();
+
+        type.modify(FieldModification.class);
+
+        assertThat(type.getField("bar")).isInstanceOf(ModificationField.class);
+        assertThat(type.getFields()).contains(type.getField("bar"));
+    }
+
+    @Test
+    void getAndSetValue() {
+        DiffableType<FieldResource> type = DiffableType.getInstance(FieldResource.class);
+        FieldResource resource = new FieldResource();
+        DiffableField field = type.getField("foo");
+
+        resource.scope = new DiffableScope(new RootScope("", mock(FileBackend.class), null, null), null);
+        field.setValue(resource, 1L);
+
+        assertThat(resource.getFoo()).isEqualTo("1");
+        assertThat(field.getValue(resource)).isEqualTo("1");
+    }
+
+    @Test
+    void setValuePassThrough() {
+        FieldResource resource = new FieldResource();
+        RootScope root = spy(new RootScope("", mock(FileBackend.class), null, null));
+        DiffableField field = DiffableType.getInstance(FieldResource.class).getField("foo");
+        String value = new String("bar");
+
+        resource.scope = new DiffableScope(root, null);
+        field.setValue(resource, value);
+
+        assertThat(resource.getFoo()).isSameAs(value);
+        verify(root, never()).convertValue(any(), any());
+
+        field.setValue(resource, 1L);
+
+        assertThat(resource.getFoo()).isEqualTo("1");
+        verify(root).convertValue(any(), eq(1L));
+    }
+
+    public static class FieldResource extends Resource {
+
+        private String foo;
+
+        public String getFoo() {
+            return foo;
+        }
+
+        public void setFoo(String foo) {
+            this.foo = foo;
+        }
+
+        @Override
+        public boolean refresh() {
+            return false;
+        }
+
+        @Override
+        public void create(GyroUI ui, State state) {
+        }
+
+        @Override
+        public void update(GyroUI ui, State state, Resource current, Set<String> changedFieldNames) {
+        }
+
+        @Override
+        public void delete(GyroUI ui, State state) {
+        }
+
+    }
+
+    public static class ModifiedResource extends FieldResource {
+
+    }
+
+    public static class FieldModification extends Modification<ModifiedResource> {
+
+        private String bar;
+
+        public String getBar() {
+            return bar;
+        }
+
+        public void setBar(String bar) {
+            this.bar = bar;
+        }
+
+    }
+
+}
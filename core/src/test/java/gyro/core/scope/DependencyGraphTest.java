@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import gyro.lang.ast.Node;
+import gyro.lang.ast.PairNode;
+import gyro.lang.ast.block.ResourceNode;
+import gyro.lang.ast.value.ReferenceNode;
+import gyro.lang.ast.value.ValueNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class DependencyGraphTest {
+
+    Scope scope;
+
+    @BeforeEach
+    void beforeEach() {
+        scope = new Scope(null);
+    }
+
+    @Test
+    void sortReference() {
+        List<Node> nodes = Arrays.asList(
+            resource("foo", reference("test::resource", "bar")),
+            resource("bar"));
+
+        assertThat(graph(nodes).sort()).containsExactly(1, 0);
+    }
+
+    @Test
+    void sortWildcard() {
+        List<Node> nodes = Arrays.asList(
+            resource("foo", reference("test::resource", "*")),
+            resource("bar"),
+            resource("qux"));
+
+        assertThat(graph(nodes).sort()).containsExactly(1, 2, 0);
+    }
+
+    @Test
+    void sortVariable() {
+        List<Node> nodes = Arrays.asList(
+            resource("foo", reference("bar")),
+            new PairNode(new ValueNode("bar"), new ValueNode("qux")));
+
+        assertThat(graph(nodes).sort()).containsExactly(1, 0);
+    }
+
+    @Test
+    void sortPrecedingVariable() {
+        List<Node> nodes = Arrays.asList(
+            new PairNode(new ValueNode("bar"), new ValueNode("qux")),
+            resource("foo", reference("bar")),
+            new PairNode(new ValueNode("bar"), new ValueNode("quux")));
+
+        assertThat(graph(nodes).sort()).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    void sortCircular() {
+        List<Node> nodes = Arrays.asList(
+            resource("foo", reference("test::resource", "bar")),
+            resource("bar", reference("test::resource", "foo")),
+            resource("qux"));
+
+        assertThat(graph(nodes).sort()).containsExactly(2, 0, 1);
+    }
+
+    @Test
+    void partition() {
+        Scope other = new Scope(null);
+        Scope another = new Scope(null);
+
+        List<Node> nodes = Arrays.asList(
+            resource("foo"),
+            resource("bar", reference("test::resource", "baz")),
+            resource("baz"),
+            resource("qux"));
+
+        DependencyGraph graph = new DependencyGraph(nodes, Arrays.asList(scope, other, another, scope));
+
+        assertThat(graph.partition(graph.sort())).containsExactly(
+            Arrays.asList(0, 3),
+            Arrays.asList(2, 1));
+    }
+
+    DependencyGraph graph(List<Node> nodes) {
+        return new DependencyGraph(nodes, Collections.nCopies(nodes.size(), scope));
+    }
+
+    ResourceNode resource(String name, Node... values) {
+        List<Node> body = new ArrayList<>();
+
+        for (Node value : values) {
+            body.add(new PairNode(new ValueNode("value"), value));
+        }
+
+        return new ResourceNode("test::resource", new ValueNode(name), body);
+    }
+
+    ReferenceNode reference(String... arguments) {
+        List<Node> nodes = new ArrayList<>();
+
+        for (String argument : arguments) {
+            nodes.add(new ValueNode(argument));
+        }
+
+        return new ReferenceNode(nodes, Collections.emptyList());
+    }
+
+}
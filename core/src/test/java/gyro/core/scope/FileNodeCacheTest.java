@@ -0,0 +1,198 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import gyro.core.FileBackend;
+import gyro.lang.ast.block.FileNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FileNodeCacheTest {
+
+    FileNodeCache cache;
+
+    @BeforeEach
+    void beforeEach() {
+        cache = new FileNodeCache();
+    }
+
+    FileNode parse(String file, String text) throws IOException {
+        return cache.parse(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), file);
+    }
+
+    @Test
+    void sameContent() throws IOException {
+        assertThat(parse("foo.gyro", "foo: 'bar'\n")).isSameAs(parse("foo.gyro", "foo: 'bar'\n"));
+    }
+
+    @Test
+    void changedContent() throws IOException {
+        assertThat(parse("foo.gyro", "foo: 'bar'\n")).isNotSameAs(parse("foo.gyro", "foo: 'qux'\n"));
+    }
+
+    @Test
+    void differentFile() throws IOException {
+        FileNode node = parse("bar.gyro", "foo: 'bar'\n");
+
+        assertThat(node).isNotSameAs(parse("foo.gyro", "foo: 'bar'\n"));
+        assertThat(node.getFile()).isEqualTo("bar.gyro");
+    }
+
+    @Test
+    void versionsPerFile() throws IOException {
+        FileNode state = parse("foo.gyro", "foo: 'bar'\n");
+        FileNode config = parse("foo.gyro", "foo: 'qux'\n");
+
+        assertThat(parse("foo.gyro", "foo: 'bar'\n")).isSameAs(state);
+        assertThat(parse("foo.gyro", "foo: 'qux'\n")).isSameAs(config);
+
+        parse("foo.gyro", "foo: 'baz'\n");
+
+        assertThat(parse("foo.gyro", "foo: 'bar'\n")).isNotSameAs(state);
+    }
+
+    @Nested
+    class Backend {
+
+        FileBackend backend;
+        String text;
+
+        @BeforeEach
+        void beforeEach() throws Exception {
+            backend = mock(FileBackend.class);
+            text = "foo: 'bar'\n";
+
+            when(backend.readBuffer("foo.gyro")).thenAnswer(i -> ByteBuffer.wrap(
+                text.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        FileNode parse() throws Exception {
+            return cache.parse(backend.readBuffer("foo.gyro"), "foo.gyro", backend);
+        }
+
+        @Test
+        void readAgain() throws Exception {
+            FileNode node = parse();
+
+            assertThat(node.getStream().getLineText(0)).isEqualTo("foo: 'bar'");
+            verify(backend, times(2)).readBuffer("foo.gyro");
+        }
+
+        @Test
+        void changed() throws Exception {
+            FileNode node = parse();
+
+            text = "foo: 'qux'\n";
+
+            assertThat(node.getStream().getLineText(0)).isNull();
+        }
+
+    }
+
+    @Nested
+    class Directory {
+
+        Path directory;
+
+        @BeforeEach
+        void beforeEach() throws IOException {
+            directory = Files.createTempDirectory("file-node-cache-test-");
+            cache = new FileNodeCache(directory);
+        }
+
+        @AfterEach
+        void afterEach() throws IOException {
+            try (Stream<Path> paths = Files.list(directory)) {
+                for (Path path : paths.collect(Collectors.toList())) {
+                    Files.delete(path);
+                }
+            }
+
+            Files.delete(directory);
+        }
+
+        List<Path> paths() throws IOException {
+            try (Stream<Path> paths = Files.list(directory)) {
+                return paths.collect(Collectors.toList());
+            }
+        }
+
+        void makeUnused(Path path) throws IOException {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(
+                System.currentTimeMillis() - TimeUnit.DAYS.toMillis(FileNodeCache.MAX_UNUSED_DAYS + 1)));
+        }
+
+        @Test
+        void written() throws IOException {
+            FileNode node = parse("foo.gyro", "foo: 'bar'\n");
+
+            assertThat(paths()).hasSize(1);
+
+            cache = new FileNodeCache(directory);
+            FileNode read = parse("foo.gyro", "foo: 'bar'\n");
+
+            assertThat(read).isNotSameAs(node);
+            assertThat(read.getFile()).isEqualTo("foo.gyro");
+        }
+
+        @Test
+        void evictUnused() throws IOException {
+            parse("foo.gyro", "foo: 'bar'\n");
+
+            Path unused = paths().get(0);
+
+            makeUnused(unused);
+            cache = new FileNodeCache(directory);
+            parse("foo.gyro", "foo: 'qux'\n");
+
+            assertThat(paths()).hasSize(1).doesNotContain(unused);
+        }
+
+        @Test
+        void keepUsed() throws IOException {
+            parse("foo.gyro", "foo: 'bar'\n");
+
+            Path used = paths().get(0);
+
+            makeUnused(used);
+            cache = new FileNodeCache(directory);
+            parse("foo.gyro", "foo: 'bar'\n");
+            parse("foo.gyro", "foo: 'qux'\n");
+
+            assertThat(paths()).hasSize(2).contains(used);
+        }
+
+    }
+
+}
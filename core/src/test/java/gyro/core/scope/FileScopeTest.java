@@ -16,6 +16,7 @@
 
 package gyro.core.scope;
 
+import gyro.core.resource.DiffableInternals;
 import org.junit.jupiter.api.Test;
 
 import static org.assertj.core.api.Assertions.*;
@@ -34,4 +35,43 @@ class FileScopeTest {
         assertThat(new FileScope(mock(RootScope.class), "foo").getFile()).isEqualTo("foo");
     }
 
+    @Test
+    void listResourcesByType() {
+        FileScope scope = new FileScope(mock(RootScope.class), "foo");
+
+        scope.put("test::resource::foobar", new TestResource("foobar"));
+        scope.put("test::resource::bar", new TestResource("bar"));
+        scope.put("test::resource::foo", new TestResource("foo"));
+        scope.put("qux", new TestResource("qux"));
+
+        assertThat(scope.listResourcesByType("test::resource", "foo"))
+            .extracting(DiffableInternals::getName)
+            .containsExactly("foobar", "foo");
+    }
+
+    @Test
+    void listResourcesAfterReplace() {
+        FileScope scope = new FileScope(mock(RootScope.class), "foo");
+
+        scope.put("test::resource::foo", new TestResource("foo"));
+        scope.put("test::resource::bar", new TestResource("bar"));
+        scope.put("test::resource::foo", new TestResource("foo"));
+
+        assertThat(scope.listResources())
+            .extracting(DiffableInternals::getName)
+            .containsExactly("foo", "bar");
+    }
+
+    @Test
+    void listResourcesAfterRemove() {
+        FileScope scope = new FileScope(mock(RootScope.class), "foo");
+
+        scope.put("test::resource::foo", new TestResource("foo"));
+        scope.put("test::resource::bar", new TestResource("bar"));
+        scope.remove("test::resource::foo");
+        scope.keySet().remove("test::resource::bar");
+
+        assertThat(scope.listResources()).isEmpty();
+    }
+
 }
\ No newline at end of file
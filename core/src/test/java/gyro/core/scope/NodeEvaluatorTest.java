@@ -73,6 +73,47 @@ class NodeEvaluatorTest {
                 assertThat(NodeEvaluator.getValue(null, ImmutableList.of("foo", "bar"), "size")).isEqualTo(2);
             }
 
+            @Test
+            void property() {
+                assertThat(NodeEvaluator.getValue(null, "foo", "bytes")).isEqualTo("foo".getBytes());
+            }
+
+            @Test
+            void propertyError() {
+                assertThatExceptionOfType(GyroException.class)
+                    .isThrownBy(() -> NodeEvaluator.getValue(null, "foo", "bar"));
+            }
+
+        }
+
+        @Nested
+        class ParseIndexTest {
+
+            @Test
+            void positive() {
+                assertThat(NodeEvaluator.parseIndex("12")).isEqualTo(12);
+            }
+
+            @Test
+            void negative() {
+                assertThat(NodeEvaluator.parseIndex("-1")).isEqualTo(-1);
+            }
+
+            @Test
+            void decimal() {
+                assertThat(NodeEvaluator.parseIndex("1.5")).isEqualTo(1);
+            }
+
+            @Test
+            void notNumber() {
+                assertThat(NodeEvaluator.parseIndex("size")).isNull();
+            }
+
+            @Test
+            void dash() {
+                assertThat(NodeEvaluator.parseIndex("-")).isNull();
+            }
+
         }
 
     }
@@ -237,6 +278,68 @@ class NodeEvaluatorTest {
 
         }
 
+        @Nested
+        class CompileTest {
+
+            private Object evaluate(Node node) {
+                return evaluator.visit(node, scope);
+            }
+
+            private Node parse(String value) {
+                return Node.parse(value, GyroParser::value);
+            }
+
+            @Test
+            void interpolatedString() {
+                scope.put("foo", "bar");
+                assertThat(evaluate(parse("\"a-$(foo)-b\""))).isEqualTo("a-bar-b");
+            }
+
+            @Test
+            void list() {
+                scope.put("foo", "bar");
+                assertThat(evaluate(parse("[$(foo), 'qux']"))).asList().containsExactly("bar", "qux");
+            }
+
+            @Test
+            void mapEarlierEntry() {
+                assertThat(evaluate(parse("{ foo: 'bar', qux: $(foo) }")))
+                    .isEqualTo(ImmutableMap.of("foo", "bar", "qux", "bar"));
+            }
+
+            @Test
+            void indexed() {
+                scope.put("foo", Arrays.asList("bar", "qux"));
+                assertThat(evaluate(parse("$(foo).1"))).isEqualTo("qux");
+            }
+
+            @Test
+            void reevaluate() {
+                Node node = parse("\"$(foo)\"");
+
+                scope.put("foo", "bar");
+                assertThat(evaluate(node)).isEqualTo("bar");
+
+                scope.put("foo", "qux");
+                assertThat(evaluate(node)).isEqualTo("qux");
+            }
+
+            @Test
+            void keptOnNode() {
+                Node node = parse("\"$(foo)\"");
+
+                scope.put("foo", "bar");
+                evaluate(node);
+
+                Object compiled = node.getCompiled();
+
+                assertThat(compiled).isNotNull();
+                assertThat(new NodeEvaluator().visit(node, scope)).isEqualTo("bar");
+                assertThat(node.getCompiled()).isSameAs(compiled);
+            }
+
+        }
+
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,547 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import gyro.core.FileBackend;
+import gyro.core.Namespace;
+import gyro.core.Type;
+import gyro.core.directive.DirectiveSettings;
+import gyro.core.directive.TestDirectiveProcessor;
+import gyro.core.resource.DiffableInternals;
+import gyro.core.resource.DiffableType;
+import gyro.core.resource.Id;
+import gyro.core.resource.Resource;
+import gyro.core.workflow.Workflow;
+import gyro.core.workflow.WorkflowSettings;
+import gyro.lang.ast.Node;
+import gyro.util.LayeredMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RootScopeTest {
+
+    @Test
+    void sharedRegistry() {
+        RootScope first = new RootScope("", mock(FileBackend.class), null, null);
+        RootScope second = new RootScope("", mock(FileBackend.class), null, null);
+        DirectiveSettings firstSettings = first.getSettings(DirectiveSettings.class);
+        DirectiveSettings secondSettings = second.getSettings(DirectiveSettings.class);
+
+        assertThat(firstSettings).isNotSameAs(secondSettings);
+        assertThat(firstSettings.getProcessor("for")).isNotNull();
+        assertThat(firstSettings.getProcessor("for")).isSameAs(secondSettings.getProcessor("for"));
+    }
+
+    @Test
+    void sharedRegistryAddProcessor() {
+        RootScope first = new RootScope("", mock(FileBackend.class), null, null);
+        RootScope second = new RootScope("", mock(FileBackend.class), null, null);
+
+        first.getSettings(DirectiveSettings.class).addProcessor(TestDirectiveProcessor.class);
+
+        assertThat(first.getSettings(DirectiveSettings.class).getProcessor("test")).isNotNull();
+        assertThat(second.getSettings(DirectiveSettings.class).getProcessor("test")).isNull();
+    }
+
+    @Nested
+    class Overlay {
+
+        RootScope parent;
+        RootScope overlay;
+
+        @BeforeEach
+        void beforeEach() {
+            parent = new RootScope("foo", mock(FileBackend.class), null, null);
+            overlay = new RootScope(parent, null);
+        }
+
+        @Test
+        void getFile() {
+            assertThat(overlay.getFile()).isEqualTo("foo");
+        }
+
+        @Test
+        void backend() {
+            assertThat(overlay.getBackend()).isSameAs(parent.getBackend());
+        }
+
+        @Test
+        void settings() {
+            assertThat(overlay.getSettings(WorkflowSettings.class))
+                .isSameAs(parent.getSettings(WorkflowSettings.class));
+        }
+
+        @Test
+        void registrations() {
+            DirectiveSettings parentSettings = parent.getSettings(DirectiveSettings.class);
+            DirectiveSettings overlaySettings = overlay.getSettings(DirectiveSettings.class);
+
+            overlaySettings.addProcessor(TestDirectiveProcessor.class);
+
+            assertThat(overlaySettings).isNotSameAs(parentSettings);
+            assertThat(overlaySettings.getProcessor("for")).isSameAs(parentSettings.getProcessor("for"));
+            assertThat(overlaySettings.getProcessor("test")).isNotNull();
+            assertThat(parentSettings.getProcessor("test")).isNull();
+        }
+
+        @Test
+        void readParent() {
+            parent.put("bar", "qux");
+
+            assertThat(overlay.get("bar")).isEqualTo("qux");
+        }
+
+        @Test
+        void writeOwn() {
+            overlay.put("bar", "qux");
+
+            assertThat(overlay.get("bar")).isEqualTo("qux");
+            assertThat(parent.containsKey("bar")).isFalse();
+        }
+
+        @Test
+        void shadowParent() {
+            parent.put("bar", "qux");
+            overlay.put("bar", "xyzzy");
+
+            assertThat(overlay.get("bar")).isEqualTo("xyzzy");
+            assertThat(parent.get("bar")).isEqualTo("qux");
+        }
+
+        @Test
+        void removeParent() {
+            parent.put("bar", "qux");
+            overlay.remove("bar");
+
+            assertThat(overlay.containsKey("bar")).isFalse();
+            assertThat(parent.get("bar")).isEqualTo("qux");
+
+            overlay.put("bar", "xyzzy");
+
+            assertThat(overlay.get("bar")).isEqualTo("xyzzy");
+        }
+
+        @Test
+        void clear() {
+            parent.put("bar", "qux");
+            overlay.put("baz", "xyzzy");
+            overlay.clear();
+
+            assertThat(overlay).isEmpty();
+            assertThat(parent.get("bar")).isEqualTo("qux");
+        }
+
+        @Test
+        void fileScopes() {
+            parent.getOrCreateFileScope("bar");
+
+            assertThat(overlay.getFileScopes()).isEmpty();
+        }
+
+        @Test
+        void convertValue() {
+            assertThat(overlay.convertValue(Long.class, "1")).isEqualTo(1L);
+        }
+
+        @Test
+        void convertId() {
+            FileScope file = parent.getOrCreateFileScope("bar");
+            IdResource resource = DiffableType.getInstance(IdResource.class)
+                .newInternal(new DiffableScope(file, null), "foo");
+
+            resource.setId("i-1");
+            file.put("test::id::foo", resource);
+
+            assertThat(overlay.convertValue(IdResource.class, "i-1")).isSameAs(resource);
+        }
+
+    }
+
+    @Nested
+    class FindResourceById {
+
+        RootScope root;
+        FileScope file;
+        IdResource resource;
+
+        @BeforeEach
+        void beforeEach() {
+            root = new RootScope("", mock(FileBackend.class), null, null);
+            file = root.getOrCreateFileScope("foo");
+            resource = DiffableType.getInstance(IdResource.class).newInternal(new DiffableScope(file, null), "foo");
+
+            file.put("test::id::foo", resource);
+        }
+
+        @Test
+        void assigned() {
+            assertThat(root.findResourceById(IdResource.class, "i-1")).isNotSameAs(resource);
+
+            resource.setId("i-1");
+
+            assertThat(root.findResourceById(IdResource.class, "i-1")).isSameAs(resource);
+        }
+
+        @Test
+        void changed() {
+            resource.setId("i-1");
+            assertThat(root.findResourceById(IdResource.class, "i-1")).isSameAs(resource);
+
+            resource.setId("i-2");
+
+            assertThat(root.findResourceById(IdResource.class, "i-2")).isSameAs(resource);
+            assertThat(root.findResourceById(IdResource.class, "i-1")).isNotSameAs(resource);
+            assertThat(root.findResourceById(IdResource.class, "i-2")).isSameAs(resource);
+        }
+
+    }
+
+    @Nested
+    class FindResources {
+
+        RootScope root;
+        FileScope file;
+        Resource resource;
+
+        @BeforeEach
+        void beforeEach() {
+            root = new RootScope("foo", mock(FileBackend.class), null, null);
+            file = root.getOrCreateFileScope("bar");
+            resource = DiffableType.getInstance(TestResource.class).newInternal(new DiffableScope(file, null), "bar");
+            file.put(resource.primaryKey(), resource);
+        }
+
+        @Test
+        void byType() {
+            assertThat(root.findResourcesByType("test::resource", "b")).containsExactly(resource);
+            assertThat(root.findResourcesByClass(TestResource.class)).containsExactly(resource);
+        }
+
+        @Test
+        void renamed() {
+            DiffableInternals.setName(resource, "qux");
+
+            assertThat(root.findResources()).isEmpty();
+            assertThat(root.findResourcesByType("test::resource", "b")).isEmpty();
+            assertThat(root.findResourcesByType("test::resource", "q")).isEmpty();
+            assertThat(root.findResourcesByClass(TestResource.class)).isEmpty();
+        }
+
+        @Test
+        void renamedBack() {
+            DiffableInternals.setName(resource, "qux");
+            root.findResources();
+            DiffableInternals.setName(resource, "bar");
+
+            assertThat(root.findResourcesByType("test::resource", "b")).containsExactly(resource);
+        }
+
+        @Test
+        void renamedInto() {
+            DiffableScope scope = new DiffableScope(file, null);
+            Resource other = DiffableType.getInstance(TestResource.class).newInternal(scope, "qux");
+
+            file.put("test::resource::baz", other);
+            assertThat(root.findResourcesByType("test::resource", "b")).isEmpty();
+
+            DiffableInternals.setName(other, "baz");
+            assertThat(root.findResourcesByType("test::resource", "baz")).containsExactly(other);
+        }
+
+        @Test
+        void renameInvalidatesIds() {
+            long modifications = file.getResourceModifications();
+
+            DiffableInternals.setName(resource, "qux");
+
+            assertThat(file.getResourceModifications()).isNotEqualTo(modifications);
+        }
+
+    }
+
+    @Nested
+    class Reuse {
+
+        Map<String, String> files;
+        FileBackend backend;
+        FileNodeCache cache;
+        RootScope previous;
+        boolean workflows;
+
+        @BeforeEach
+        void beforeEach() throws Exception {
+            files = new LinkedHashMap<>();
+            backend = mock(FileBackend.class);
+            cache = new FileNodeCache();
+            workflows = true;
+
+            when(backend.list()).thenAnswer(i -> new ArrayList<>(files.keySet()).stream());
+
+            when(backend.readBuffer(anyString())).thenAnswer(i -> ByteBuffer.wrap(
+                files.get(i.<String>getArgument(0)).getBytes(StandardCharsets.UTF_8)));
+        }
+
+        RootScope evaluate() {
+            RootScope root = new RootScope("", backend, null, null, cache);
+
+            root.put("test::resource", TestResource.class);
+
+            if (workflows) {
+                root.getSettings(WorkflowSettings.class).getWorkflows().add(mock(Workflow.class));
+            }
+
+            root.keepEvaluation();
+            root.evaluate(previous);
+
+            previous = root;
+            return root;
+        }
+
+        List<String> evaluatedFiles(RootScope root) {
+            return root.getEvaluator().getBody().stream().map(Node::getFile).collect(Collectors.toList());
+        }
+
+        @Test
+        void unchanged() {
+            files.put("a.gyro", "test::resource foo\nend\n");
+            files.put("b.gyro", "test::resource bar\nend\n");
+            evaluate();
+            files.put("a.gyro", "test::resource foo\n\nend\n");
+
+            RootScope root = evaluate();
+
+            assertThat(evaluatedFiles(root)).containsExactly("a.gyro");
+            assertThat(root.getFileScopes()).extracting(FileScope::getFile).containsExactly("a.gyro", "b.gyro");
+
+            Resource bar = root.findResource("test::resource::bar");
+
+            assertThat(bar).isNotNull();
+            assertThat(DiffableInternals.getScope(bar).getRootScope()).isSameAs(root);
+        }
+
+        @Test
+        void dependent() {
+            files.put("a.gyro", "test::resource foo\nend\n");
+            files.put("b.gyro", "foo: $(test::resource foo)\n");
+            files.put("c.gyro", "test::resource bar\nend\n");
+            evaluate();
+            files.put("a.gyro", "test::resource foo\n\nend\n");
+
+            RootScope root = evaluate();
+
+            assertThat(evaluatedFiles(root)).containsExactly("a.gyro", "b.gyro");
+            Resource foo = root.findResource("test::resource::foo");
+
+            assertThat(root.getOrCreateFileScope("b.gyro").get("foo")).isSameAs(foo);
+        }
+
+        @Test
+        void independentReference() {
+            files.put("a.gyro", "test::resource foo\nend\n");
+            files.put("b.gyro", "bar: $(test::resource bar)\n");
+            files.put("c.gyro", "test::resource bar\nend\n");
+            evaluate();
+            files.put("a.gyro", "test::resource foo\n\nend\n");
+
+            RootScope root = evaluate();
+
+            assertThat(evaluatedFiles(root)).containsExactly("a.gyro");
+            Resource bar = root.findResource("test::resource::bar");
+
+            assertThat(root.getOrCreateFileScope("b.gyro").get("bar")).isSameAs(bar);
+        }
+
+        @Test
+        void wildcard() {
+            files.put("a.gyro", "test::resource foo\nend\n");
+            files.put("b.gyro", "bars: $(test::resource bar*)\n");
+            files.put("c.gyro", "test::resource qux\nend\n");
+            evaluate();
+            files.put("a.gyro", "test::resource bar2\nend\n");
+
+            RootScope root = evaluate();
+
+            assertThat(evaluatedFiles(root)).containsExactly("a.gyro", "b.gyro");
+            assertThat((List<?>) root.getOrCreateFileScope("b.gyro").get("bars")).hasSize(1);
+        }
+
+        @Test
+        void notKept() {
+            files.put("a.gyro", "test::resource foo\nend\n");
+            files.put("b.gyro", "test::resource bar\nend\n");
+
+            previous = new RootScope("", backend, null, null, cache);
+            previous.put("test::resource", TestResource.class);
+            previous.evaluate();
+
+            assertThat(evaluatedFiles(evaluate())).containsExactly("a.gyro", "b.gyro");
+        }
+
+        @Test
+        void noWorkflows() {
+            workflows = false;
+            files.put("a.gyro", "test::resource foo\nend\n");
+            files.put("b.gyro", "test::resource bar\nend\n");
+
+            assertThat(evaluate().isEvaluationKept()).isFalse();
+            assertThat(evaluatedFiles(evaluate())).containsExactly("a.gyro", "b.gyro");
+        }
+
+        @Test
+        void keptLater() {
+            workflows = false;
+            files.put("a.gyro", "test::resource foo\nend\n");
+            files.put("b.gyro", "test::resource bar\nend\n");
+
+            RootScope root = evaluate();
+
+            root.keepEvaluation(root.snapshot());
+            files.put("a.gyro", "test::resource foo\n\nend\n");
+
+            assertThat(evaluatedFiles(evaluate())).containsExactly("a.gyro");
+        }
+
+    }
+
+    @Nested
+    class Snapshot {
+
+        RootScope root;
+        FileScope file;
+        Resource resource;
+        RootScope snapshot;
+
+        @BeforeEach
+        void beforeEach() {
+            root = new RootScope("foo", mock(FileBackend.class), null, null);
+            root.put("bar", "qux");
+            file = root.getOrCreateFileScope("bar");
+            resource = DiffableType.getInstance(TestResource.class).newInternal(new DiffableScope(file, null), "bar");
+            file.put(resource.primaryKey(), resource);
+            snapshot = root.snapshot();
+        }
+
+        @Test
+        void values() {
+            assertThat(snapshot.get("bar")).isEqualTo("qux");
+        }
+
+        @Test
+        void settings() {
+            assertThat(snapshot.getSettings(DirectiveSettings.class))
+                .isSameAs(root.getSettings(DirectiveSettings.class));
+        }
+
+        @Test
+        void fileScopes() {
+            assertThat(snapshot.getFileScopes()).hasSize(1);
+            assertThat(snapshot.getFileScopes().get(0).getFile()).isEqualTo("bar");
+        }
+
+        @Test
+        void copyResource() {
+            Resource copy = snapshot.findResource("test::resource::bar");
+
+            assertThat(copy).isInstanceOf(TestResource.class);
+            assertThat(copy).isNotSameAs(resource);
+            assertThat(DiffableInternals.getName(copy)).isEqualTo("bar");
+            assertThat(DiffableInternals.getScope(copy).getFileScope()).isSameAs(snapshot.getFileScopes().get(0));
+        }
+
+        @Test
+        void nestedResource() {
+            Map<String, Object> values = new HashMap<>();
+
+            values.put("i", "qux");
+
+            Scope loop = new Scope(file, new LayeredMap<>(file, values));
+            DiffableScope scope = new DiffableScope(loop, null);
+            Resource nested = DiffableType.getInstance(TestResource.class).newInternal(scope, "nested");
+
+            file.put(nested.primaryKey(), nested);
+
+            RootScope snapshot = root.snapshot();
+            Resource copy = snapshot.findResource("test::resource::nested");
+            Scope copyLoop = DiffableInternals.getScope(copy).getParent();
+
+            assertThat(copyLoop).isNotSameAs(loop);
+            assertThat(copyLoop.get("i")).isEqualTo("qux");
+            assertThat(copyLoop.getFileScope()).isSameAs(snapshot.getFileScopes().get(0));
+            assertThat(copyLoop.getRootScope()).isSameAs(snapshot);
+        }
+
+        @Test
+        void references() {
+            Map<String, Object> map = new HashMap<>();
+
+            map.put("resource", resource);
+            file.put("resource", resource);
+            file.put("list", Collections.singletonList(resource));
+            file.put("map", map);
+
+            RootScope snapshot = root.snapshot();
+            Resource copy = snapshot.findResource("test::resource::bar");
+            FileScope copyFile = snapshot.getFileScopes().get(0);
+
+            assertThat(copyFile.get("resource")).isSameAs(copy);
+            assertThat(((List<?>) copyFile.get("list")).get(0)).isSameAs(copy);
+            assertThat(((Map<?, ?>) copyFile.get("map")).get("resource")).isSameAs(copy);
+            assertThat(map.get("resource")).isSameAs(resource);
+        }
+
+        @Test
+        void removeResource() {
+            snapshot.getFileScopes().get(0).remove(resource.primaryKey());
+
+            assertThat(snapshot.findResource("test::resource::bar")).isNull();
+            assertThat(root.findResource("test::resource::bar")).isSameAs(resource);
+        }
+
+    }
+
+    @Namespace("test")
+    @Type("id")
+    public static class IdResource extends TestResource {
+
+        private String id;
+
+        @Id
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+    }
+
+}
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 
 import gyro.core.FileBackend;
+import gyro.core.command.HighlanderSettings;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -52,6 +53,53 @@ class ScopeTest {
             .isEqualTo(scope.getSettings(TestSettings.class));
     }
 
+    @Test
+    void getSettingsMultiple() {
+        Scope scope = new Scope(null);
+        TestSettings test = scope.getSettings(TestSettings.class);
+        HighlanderSettings highlander = scope.getSettings(HighlanderSettings.class);
+
+        assertThat(scope.getSettings(TestSettings.class)).isSameAs(test);
+        assertThat(scope.getSettings(HighlanderSettings.class)).isSameAs(highlander);
+    }
+
+    @Test
+    void putAllSettings() {
+        Scope scope = new Scope(null);
+        Scope other = new Scope(null);
+        TestSettings test = other.getSettings(TestSettings.class);
+
+        scope.getSettings(HighlanderSettings.class);
+        scope.putAllSettings(other);
+
+        assertThat(scope.getSettings(TestSettings.class)).isSameAs(test);
+        assertThat(scope.getSettings(HighlanderSettings.class)).isNotNull();
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void getSettingsByClass() throws Exception {
+        Scope scope = new Scope(null);
+        TestSettings test = scope.getSettings(TestSettings.class);
+        HighlanderSettings highlander = new HighlanderSettings();
+
+        scope.getSettingsByClass().put(HighlanderSettings.class, highlander);
+
+        assertThat(scope.getSettingsByClass().get(TestSettings.class)).isSameAs(test);
+        assertThat(scope.getSettings(HighlanderSettings.class)).isSameAs(highlander);
+        assertThat(scope.getSettingsByClass().asMap()).containsOnlyKeys(TestSettings.class, HighlanderSettings.class);
+    }
+
+    @Test
+    void getNameMissing() {
+        assertThat(new Scope(null).getName("foo")).isNull();
+    }
+
+    @Test
+    void getLocationMissing() {
+        assertThat(new Scope(null).getLocation("foo")).isNull();
+    }
+
     @Test
     void addValueNull() {
         Scope scope = new Scope(null);
@@ -28,6 +28,9 @@ import gyro.core.resource.Resource;
 @Type("resource")
 public class TestResource extends Resource {
 
+    public TestResource() {
+    }
+
     public TestResource(String name) {
         DiffableInternals.setName(this, name);
     }
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.lang.ast;
+
+import java.util.concurrent.TimeUnit;
+
+import gyro.parser.antlr4.GyroParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Parses generated files of different shapes so that changes to the grammar can be measured.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({ "RESOURCES", "DEEP_MAPS", "LONG_LISTS", "INVALID" })
+    public Shape shape;
+
+    @Param("1000")
+    public int size;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder();
+
+        shape.generate(builder, size);
+        text = builder.toString();
+    }
+
+    @Benchmark
+    public Object parse() {
+        try {
+            return Node.parse(text, GyroParser::file);
+
+        } catch (RuntimeException error) {
+            return error;
+        }
+    }
+
+    public enum Shape {
+
+        RESOURCES {
+            @Override
+            void generate(StringBuilder builder, int size) {
+                for (int i = 0; i < size; i++) {
+                    builder.append("benchmark::resource resource-").append(i).append('\n');
+                    builder.append("    name: 'resource-").append(i).append("'\n");
+                    builder.append("    count: ").append(i).append('\n');
+                    builder.append("    enabled: true\n");
+                    builder.append("    parent: $(benchmark::resource resource-").append(i / 2).append(")\n");
+                    builder.append("    tags: { name: \"resource-$(index)\", index: ").append(i).append(" }\n");
+                    builder.append('\n');
+                    builder.append("    block\n");
+                    builder.append("        value: ").append(i).append(" * 2 + 1\n");
+                    builder.append("    end\n");
+                    builder.append("end\n\n");
+                }
+            }
+        },
+
+        DEEP_MAPS {
+            @Override
+            void generate(StringBuilder builder, int size) {
+                for (int i = 0; i < size; i++) {
+                    builder.append("map-").append(i).append(": ");
+
+                    for (int d = 0; d < 10; d++) {
+                        builder.append("{\n    key-").append(d).append(": 'value', nested: ");
+                    }
+
+                    builder.append(i);
+
+                    for (int d = 0; d < 10; d++) {
+                        builder.append("\n}");
+                    }
+
+                    builder.append("\n\n");
+                }
+            }
+        },
+
+        LONG_LISTS {
+            @Override
+            void generate(StringBuilder builder, int size) {
+                for (int i = 0; i < 10; i++) {
+                    builder.append("list-").append(i).append(": [\n");
+
+                    for (int j = 0; j < size; j++) {
+                        builder.append("    'item-").append(j).append("',\n");
+                    }
+
+                    builder.append("    'last'\n]\n\n");
+                }
+            }
+        },
+
+        // Measures the fallback to the full LL prediction with error reporting.
+        INVALID {
+            @Override
+            void generate(StringBuilder builder, int size) {
+                RESOURCES.generate(builder, size);
+                builder.append("invalid: [\n");
+            }
+        };
+
+        abstract void generate(StringBuilder builder, int size);
+
+    }
+
+}
@@ -16,108 +16,309 @@
 
 package gyro.lang;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
 
-import gyro.util.Bug;
+import com.google.common.io.ByteStreams;
 import org.antlr.v4.runtime.CharStream;
-import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CodePointBuffer;
+import org.antlr.v4.runtime.CodePointCharStream;
 import org.antlr.v4.runtime.IntStream;
 import org.antlr.v4.runtime.misc.Interval;
 
+/**
+ * Source text that's decoded once into a single {@link CodePointBuffer}, which uses one byte per character when the
+ * text is all Latin-1, and two bytes otherwise. Line terminators are normalized to {@code \n}, and the line offsets
+ * for {@link #getLineText} are only computed when it's first called. Streams that are created from bytes can
+ * {@link #release} the decoded text once they're parsed, and decode it again when it's needed, either from the bytes
+ * or from a source that reads them again, so that nothing but the line and column numbers is kept in between.
+ */
 public class GyroCharStream implements CharStream {
 
-    private final List<String> lines;
-    private final CharStream stream;
+    private static final int CHUNK_SIZE = 64 * 1024;
 
-    private List<String> readLines(Reader reader) throws IOException {
-        try (BufferedReader buffered = new BufferedReader(reader)) {
-            List<String> lines = new ArrayList<>();
+    private final String sourceName;
+    private final Callable<ByteBuffer> source;
+    private volatile Content content;
 
-            for (String line; (line = buffered.readLine()) != null; ) {
-                lines.add(line);
-            }
+    public GyroCharStream(InputStream input, String file) throws IOException {
+        this(ByteBuffer.wrap(ByteStreams.toByteArray(input)), file);
+    }
+
+    /**
+     * @param bytes Nonnull. UTF-8 encoded. Not modified, and kept so that the text can be decoded again after
+     * {@link #release}.
+     */
+    public GyroCharStream(ByteBuffer bytes, String file) {
+        this(bytes, file, bytes::duplicate);
+    }
+
+    /**
+     * Creates a stream that doesn't keep the given {@code bytes}, and reads them again from the given {@code source}
+     * if the text is needed after {@link #release}, e.g. from the file that they were read from.
+     *
+     * @param bytes Nonnull. UTF-8 encoded. Not modified.
+     * @param source Nonnull. Should fail rather than return different bytes, e.g. if the file changed since.
+     */
+    public GyroCharStream(ByteBuffer bytes, String file, Callable<ByteBuffer> source) {
+        this.sourceName = file != null ? file : IntStream.UNKNOWN_SOURCE_NAME;
+        this.source = source;
+        this.content = decode(bytes);
+    }
+
+    public GyroCharStream(String text) {
+        this.sourceName = IntStream.UNKNOWN_SOURCE_NAME;
+        this.source = null;
 
-            return lines;
+        BufferBuilder builder = new BufferBuilder(text.length());
+
+        for (int i = 0, length = text.length(); i < length; i += CHUNK_SIZE) {
+            builder.append(CharBuffer.wrap(text, i, Math.min(i + CHUNK_SIZE, length)));
         }
+
+        this.content = new Content(builder.build());
     }
 
-    private CharStream createStream(List<String> lines, String file) {
-        return CharStreams.fromString(
-            String.join("\n", lines),
-            file != null ? file : IntStream.UNKNOWN_SOURCE_NAME);
+    /**
+     * Creates a stream that's only read from the given {@code source} when its content is needed, e.g. for the code
+     * snippets of nodes that were restored from the AST cache instead of being parsed.
+     */
+    public GyroCharStream(String file, Callable<ByteBuffer> source) {
+        this.sourceName = file != null ? file : IntStream.UNKNOWN_SOURCE_NAME;
+        this.source = source;
     }
 
-    public GyroCharStream(InputStream input, String file) throws IOException {
-        lines = readLines(new InputStreamReader(input, StandardCharsets.UTF_8));
-        stream = createStream(lines, file);
+    private Content decode(ByteBuffer bytes) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        ByteBuffer input = bytes.duplicate();
+        CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+        BufferBuilder builder = new BufferBuilder(input.remaining());
+
+        while (true) {
+            CoderResult result = decoder.decode(input, chars, true);
+
+            chars.flip();
+            builder.append(chars);
+            chars.clear();
+
+            if (result.isUnderflow()) {
+                break;
+            }
+        }
+
+        decoder.flush(chars);
+        chars.flip();
+        builder.append(chars);
+        return new Content(builder.build());
     }
 
-    public GyroCharStream(String text) {
-        try {
-            lines = readLines(new StringReader(text));
+    private Content getContent() {
+        Content c = content;
+
+        return c != null ? c : load();
+    }
+
+    private synchronized Content load() {
+        Content c = content;
 
-        } catch (IOException error) {
-            throw new Bug(error);
+        if (c == null) {
+            try {
+                c = decode(source.call());
+
+            } catch (Exception error) {
+
+                // Only used for the code snippets, so there's nothing to show if the source is gone.
+                c = new Content(CodePointBuffer.builder(0).build());
+            }
+
+            content = c;
         }
 
-        stream = createStream(lines, null);
+        return c;
+    }
+
+    /**
+     * Drops the decoded text if it can be decoded again from the source when it's needed, e.g. for the code snippets
+     * after the file is parsed.
+     */
+    public synchronized void release() {
+        if (source != null) {
+            content = null;
+        }
+    }
+
+    private CharStream getCharStream() {
+        return getContent().stream;
     }
 
     public String getLineText(int line) {
-        return line >= 0 && line < lines.size() ? lines.get(line) : null;
+        Content c = getContent();
+        int[] starts = c.getLineStarts();
+
+        if (line < 0 || line >= starts.length) {
+            return null;
+        }
+
+        int start = starts[line];
+        int stop = line + 1 < starts.length ? starts[line + 1] - 1 : c.stream.size();
+
+        return c.stream.getText(Interval.of(start, stop - 1));
     }
 
     @Override
     public void consume() {
-        stream.consume();
+        getCharStream().consume();
     }
 
     @Override
     public String getSourceName() {
-        return stream.getSourceName();
+        return sourceName;
     }
 
     @Override
     public String getText(Interval interval) {
-        return stream.getText(interval);
+        return getCharStream().getText(interval);
     }
 
     @Override
     public int index() {
-        return stream.index();
+        return getCharStream().index();
     }
 
     @Override
     public int LA(int i) {
-        return stream.LA(i);
+        return getCharStream().LA(i);
     }
 
     @Override
     public int mark() {
-        return stream.mark();
+        return getCharStream().mark();
     }
 
     @Override
     public void release(int marker) {
-        stream.release(marker);
+        getCharStream().release(marker);
     }
 
     @Override
     public void seek(int index) {
-        stream.seek(index);
+        getCharStream().seek(index);
     }
 
     @Override
     public int size() {
-        return stream.size();
+        return getCharStream().size();
+    }
+
+    private class Content {
+
+        private final CodePointBuffer buffer;
+        private final CharStream stream;
+        private volatile int[] lineStarts;
+
+        public Content(CodePointBuffer buffer) {
+            this.buffer = buffer;
+            this.stream = CodePointCharStream.fromBuffer(buffer, sourceName);
+        }
+
+        public int[] getLineStarts() {
+            int[] starts = lineStarts;
+
+            if (starts == null) {
+                int position = buffer.position();
+                int size = buffer.remaining();
+                int count = 0;
+
+                starts = new int[16];
+
+                if (size > 0) {
+                    starts[count++] = 0;
+
+                    for (int i = 0; i < size; i++) {
+                        if (buffer.get(position + i) == '\n') {
+                            if (count == starts.length) {
+                                starts = Arrays.copyOf(starts, count * 2);
+                            }
+
+                            starts[count++] = i + 1;
+                        }
+                    }
+                }
+
+                starts = Arrays.copyOf(starts, count);
+                lineStarts = starts;
+            }
+
+            return starts;
+        }
+
+    }
+
+    // Normalizes the line terminators the same way BufferedReader#readLine does, and drops the last one so that the
+    // positions match the text as it was read before.
+    private static class BufferBuilder {
+
+        private final CodePointBuffer.Builder builder;
+        private final CharBuffer normalized = CharBuffer.allocate(CHUNK_SIZE + 1);
+        private boolean carriageReturn;
+        private boolean pendingNewline;
+
+        public BufferBuilder(int estimatedSize) {
+            this.builder = CodePointBuffer.builder(estimatedSize);
+        }
+
+        public void append(CharBuffer chars) {
+            normalized.clear();
+
+            if (pendingNewline) {
+                normalized.put('\n');
+                pendingNewline = false;
+            }
+
+            while (chars.hasRemaining()) {
+                char c = chars.get();
+
+                if (c == '\r') {
+                    carriageReturn = true;
+                    normalized.put('\n');
+
+                } else if (c == '\n' && carriageReturn) {
+                    carriageReturn = false;
+
+                } else {
+                    carriageReturn = false;
+                    normalized.put(c);
+                }
+            }
+
+            normalized.flip();
+
+            int limit = normalized.limit();
+
+            if (limit > 0 && normalized.get(limit - 1) == '\n') {
+                normalized.limit(limit - 1);
+                pendingNewline = true;
+            }
+
+            builder.ensureRemaining(normalized.remaining());
+            builder.append(normalized);
+        }
+
+        public CodePointBuffer build() {
+            return builder.build();
+        }
+
     }
 
 }
@@ -99,6 +99,11 @@ public interface Locatable {
 
         for (int line = startLine; line <= stopLine; line++) {
             String current = stream.getLineText(line);
+
+            if (current == null) {
+                break;
+            }
+
             int end = current.length();
             int start = line == startLine ? startColumn : 0;
             int stop = line == stopLine ? stopColumn + 1 : end;
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.lang;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Identifiers, e.g. keys, resource types and directive names, that are shared across all nodes so that each is only
+ * kept once no matter how many times it appears, and comparing them usually stops at the reference check in
+ * {@link String#equals}.
+ *
+ * <p>The references are weak, so identifiers that aren't used anymore don't stay around for the rest of the
+ * run.</p>
+ */
+public final class Symbols {
+
+    private static final Interner<String> INTERNER = Interners.newWeakInterner();
+
+    /**
+     * @param symbol Nullable.
+     */
+    public static String intern(String symbol) {
+        return symbol != null ? INTERNER.intern(symbol) : null;
+    }
+
+    private Symbols() {
+    }
+
+}
@@ -47,9 +47,12 @@ import gyro.parser.antlr4.GyroLexer;
 import gyro.parser.antlr4.GyroParser;
 import gyro.util.Bug;
 import gyro.util.ImmutableCollectors;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.TerminalNode;
 
@@ -149,7 +152,7 @@ public abstract class Node extends Rule {
         return parse(new GyroCharStream(input, file), function);
     }
 
-    private static Node parse(GyroCharStream charStream, Function<GyroParser, ? extends ParseTree> function) {
+    public static Node parse(GyroCharStream charStream, Function<GyroParser, ? extends ParseTree> function) {
         GyroErrorListener errorListener = new GyroErrorListener(charStream);
         GyroLexer lexer = new GyroLexer(charStream);
 
@@ -159,27 +162,53 @@ public abstract class Node extends Rule {
         CommonTokenStream stream = new CommonTokenStream(lexer);
         GyroParser parser = new GyroParser(stream);
 
+        // Almost all files are valid, so try the faster SLL prediction first, and only fall back to the full LL
+        // prediction with error reporting if that fails.
         parser.removeErrorListeners();
-        parser.addErrorListener(errorListener);
-        parser.setErrorHandler(GyroErrorStrategy.INSTANCE);
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.setErrorHandler(new BailErrorStrategy());
+
+        ParseTree tree;
+
+        try {
+            tree = function.apply(parser);
+
+        } catch (ParseCancellationException error) {
+            parser.reset();
+            parser.addErrorListener(errorListener);
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+
+            // Error strategies keep the recovery state, so they can't be shared by files that are parsed concurrently.
+            parser.setErrorHandler(new GyroErrorStrategy());
+
+            tree = function.apply(parser);
+        }
 
-        ParseTree tree = function.apply(parser);
         List<SyntaxError> errors = errorListener.getSyntaxErrors();
 
         if (!errors.isEmpty()) {
             throw new SyntaxErrorException(charStream.getSourceName(), errors);
         }
 
+        Node node;
+
         try {
-            return Node.create(tree);
+            node = Node.create(tree);
 
         } catch (EscapeException e) {
             throw new SyntaxErrorException(
                 charStream.getSourceName(),
                 Collections.singletonList(new SyntaxError(charStream, e.getMessage(), e.getToken())));
         }
+
+        // The nodes only keep the line and column numbers, so the text isn't needed until there's a code snippet to
+        // show.
+        charStream.release();
+        return node;
     }
 
+    private Object compiled;
+
     public Node(Token start, Token stop) {
         super(start, stop);
     }
@@ -188,6 +217,19 @@ public abstract class Node extends Rule {
         super(context);
     }
 
+    /**
+     * Returns what an evaluator compiled this node into, if anything, so that it's kept for as long as the node is.
+     *
+     * @return Nullable.
+     */
+    public Object getCompiled() {
+        return compiled;
+    }
+
+    public void setCompiled(Object compiled) {
+        this.compiled = compiled;
+    }
+
     public abstract <C, R, X extends Throwable> R accept(NodeVisitor<C, R, X> visitor, C context) throws X;
 
     @Override
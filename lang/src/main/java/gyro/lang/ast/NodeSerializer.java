@@ -0,0 +1,536 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.lang.ast;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.hash.Hashing;
+import gyro.lang.GyroCharStream;
+import gyro.lang.Symbols;
+import gyro.lang.ast.block.DirectiveNode;
+import gyro.lang.ast.block.DirectiveOption;
+import gyro.lang.ast.block.DirectiveSection;
+import gyro.lang.ast.block.FileNode;
+import gyro.lang.ast.block.KeyBlockNode;
+import gyro.lang.ast.block.ResourceNode;
+import gyro.lang.ast.value.BinaryNode;
+import gyro.lang.ast.value.IndexedNode;
+import gyro.lang.ast.value.InterpolatedStringNode;
+import gyro.lang.ast.value.ListNode;
+import gyro.lang.ast.value.MapNode;
+import gyro.lang.ast.value.ReferenceNode;
+import gyro.lang.ast.value.ValueNode;
+import gyro.lang.filter.AndFilter;
+import gyro.lang.filter.ComparisonFilter;
+import gyro.lang.filter.Filter;
+import gyro.lang.filter.OrFilter;
+import gyro.parser.antlr4.GyroLexer;
+import gyro.parser.antlr4.GyroParser;
+import gyro.util.Bug;
+
+/**
+ * Writes and reads {@link FileNode}s in a compact binary form, along with the source locations, so that files that
+ * haven't changed don't have to be parsed again.
+ */
+public class NodeSerializer implements NodeVisitor<DataOutput, Void, IOException> {
+
+    private static final int MAGIC = 0x6779726f;
+    private static final int FORMAT = 2;
+
+    /**
+     * Changes whenever the serialized form or the grammar changes.
+     */
+    public static final String VERSION = Hashing.sha256()
+        .newHasher()
+        .putInt(FORMAT)
+        .putString(GyroLexer._serializedATN, StandardCharsets.UTF_8)
+        .putString(GyroParser._serializedATN, StandardCharsets.UTF_8)
+        .hash()
+        .toString();
+
+    private static final byte NULL = 0;
+    private static final byte FILE = 1;
+    private static final byte PAIR = 2;
+    private static final byte DIRECTIVE = 3;
+    private static final byte KEY_BLOCK = 4;
+    private static final byte RESOURCE = 5;
+    private static final byte BINARY = 6;
+    private static final byte INDEXED = 7;
+    private static final byte INTERPOLATED_STRING = 8;
+    private static final byte LIST = 9;
+    private static final byte MAP = 10;
+    private static final byte REFERENCE = 11;
+    private static final byte VALUE = 12;
+
+    private static final byte STRING = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+
+    private static final byte COMPARISON_FILTER = 0;
+    private static final byte AND_FILTER = 1;
+    private static final byte OR_FILTER = 2;
+
+    private static final NodeSerializer INSTANCE = new NodeSerializer();
+
+    public static void write(FileNode node, OutputStream output) throws IOException {
+        DataOutputStream data = new DataOutputStream(output);
+
+        data.writeInt(MAGIC);
+        data.writeUTF(VERSION);
+        INSTANCE.visit(node, data);
+        data.flush();
+    }
+
+    /**
+     * @param stream Nonnull. Used for the source locations of the nodes.
+     * @return {@code null} if the input was written by a different version.
+     */
+    public static FileNode read(InputStream input, GyroCharStream stream) throws IOException {
+        DataInputStream data = new DataInputStream(input);
+
+        if (data.readInt() != MAGIC || !VERSION.equals(data.readUTF())) {
+            return null;
+        }
+
+        Node node = new Reader(data, stream).readNode();
+
+        return node instanceof FileNode ? (FileNode) node : null;
+    }
+
+    private static void writeString(DataOutput output, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static void writeLocation(DataOutput output, Rule rule) throws IOException {
+        output.writeInt(rule.getStartLine());
+        output.writeInt(rule.getStartColumn());
+        output.writeInt(rule.getStopLine());
+        output.writeInt(rule.getStopColumn());
+    }
+
+    private void writeNodes(DataOutput output, List<? extends Node> nodes) throws IOException {
+        output.writeInt(nodes.size());
+
+        for (Node node : nodes) {
+            writeNode(output, node);
+        }
+    }
+
+    private void writeNode(DataOutput output, Node node) throws IOException {
+        if (node == null) {
+            output.writeByte(NULL);
+
+        } else {
+            visit(node, output);
+        }
+    }
+
+    private void writeFilters(DataOutput output, List<Filter> filters) throws IOException {
+        output.writeInt(filters.size());
+
+        for (Filter filter : filters) {
+            if (filter instanceof ComparisonFilter) {
+                ComparisonFilter comparison = (ComparisonFilter) filter;
+
+                output.writeByte(COMPARISON_FILTER);
+                writeString(output, comparison.getOperator());
+                writeString(output, comparison.getKey());
+                writeNode(output, comparison.getValue());
+
+            } else if (filter instanceof AndFilter) {
+                output.writeByte(AND_FILTER);
+                writeFilters(output, ((AndFilter) filter).getChildren());
+
+            } else if (filter instanceof OrFilter) {
+                output.writeByte(OR_FILTER);
+                writeFilters(output, ((OrFilter) filter).getChildren());
+
+            } else {
+                throw new Bug(String.format(
+                    "@|bold %s|@ isn't a known filter type!",
+                    filter.getClass().getName()));
+            }
+        }
+    }
+
+    @Override
+    public Void visitDirective(DirectiveNode node, DataOutput output) throws IOException {
+        output.writeByte(DIRECTIVE);
+        writeLocation(output, node);
+        writeString(output, node.getName());
+        writeNodes(output, node.getArguments());
+        output.writeInt(node.getOptions().size());
+
+        for (DirectiveOption option : node.getOptions()) {
+            writeLocation(output, option);
+            writeString(output, option.getName());
+            writeNodes(output, option.getArguments());
+        }
+
+        writeNodes(output, node.getBody());
+        output.writeInt(node.getSections().size());
+
+        for (DirectiveSection section : node.getSections()) {
+            writeLocation(output, section);
+            writeString(output, section.getName());
+            writeNodes(output, section.getArguments());
+            writeNodes(output, section.getBody());
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitPair(PairNode node, DataOutput output) throws IOException {
+        output.writeByte(PAIR);
+        writeLocation(output, node);
+        writeNode(output, node.getKey());
+        writeNode(output, node.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visitFile(FileNode node, DataOutput output) throws IOException {
+        output.writeByte(FILE);
+        writeLocation(output, node);
+        writeNodes(output, node.getBody());
+        return null;
+    }
+
+    @Override
+    public Void visitKeyBlock(KeyBlockNode node, DataOutput output) throws IOException {
+        output.writeByte(KEY_BLOCK);
+        writeLocation(output, node);
+        writeString(output, node.getKey());
+        writeNode(output, node.getName());
+        writeNodes(output, node.getBody());
+        return null;
+    }
+
+    @Override
+    public Void visitResource(ResourceNode node, DataOutput output) throws IOException {
+        output.writeByte(RESOURCE);
+        writeLocation(output, node);
+        writeString(output, node.getType());
+        writeNode(output, node.getName());
+        writeNodes(output, node.getBody());
+        return null;
+    }
+
+    @Override
+    public Void visitBinary(BinaryNode node, DataOutput output) throws IOException {
+        output.writeByte(BINARY);
+        writeLocation(output, node);
+        writeString(output, node.getOperator());
+        writeNode(output, node.getLeft());
+        writeNode(output, node.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visitIndexed(IndexedNode node, DataOutput output) throws IOException {
+        output.writeByte(INDEXED);
+        writeLocation(output, node);
+        writeNode(output, node.getValue());
+        writeNodes(output, node.getIndexes());
+        return null;
+    }
+
+    @Override
+    public Void visitInterpolatedString(InterpolatedStringNode node, DataOutput output) throws IOException {
+        output.writeByte(INTERPOLATED_STRING);
+        writeLocation(output, node);
+        writeNodes(output, node.getItems());
+        return null;
+    }
+
+    @Override
+    public Void visitList(ListNode node, DataOutput output) throws IOException {
+        output.writeByte(LIST);
+        writeLocation(output, node);
+        writeNodes(output, node.getItems());
+        return null;
+    }
+
+    @Override
+    public Void visitMap(MapNode node, DataOutput output) throws IOException {
+        output.writeByte(MAP);
+        writeLocation(output, node);
+        writeNodes(output, node.getEntries());
+        return null;
+    }
+
+    @Override
+    public Void visitReference(ReferenceNode node, DataOutput output) throws IOException {
+        output.writeByte(REFERENCE);
+        writeLocation(output, node);
+        writeNodes(output, node.getArguments());
+        writeFilters(output, node.getFilters());
+        return null;
+    }
+
+    @Override
+    public Void visitValue(ValueNode node, DataOutput output) throws IOException {
+        Object value = node.getValue();
+
+        output.writeByte(VALUE);
+        writeLocation(output, node);
+
+        if (value instanceof String) {
+            output.writeByte(STRING);
+            writeString(output, (String) value);
+
+        } else if (value instanceof Boolean) {
+            output.writeByte(BOOLEAN);
+            output.writeBoolean((Boolean) value);
+
+        } else if (value instanceof Long) {
+            output.writeByte(LONG);
+            output.writeLong((Long) value);
+
+        } else if (value instanceof Double) {
+            output.writeByte(DOUBLE);
+            output.writeDouble((Double) value);
+
+        } else {
+            throw new Bug(String.format(
+                "@|bold %s|@ isn't a known value type!",
+                value.getClass().getName()));
+        }
+
+        return null;
+    }
+
+    private static class Reader {
+
+        private final DataInput input;
+        private final GyroCharStream stream;
+
+        public Reader(DataInput input, GyroCharStream stream) {
+            this.input = input;
+            this.stream = stream;
+        }
+
+        private String readString() throws IOException {
+            byte[] bytes = new byte[input.readInt()];
+
+            input.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        // Locations are written before the children, so they're read first and set after the rule is created.
+        private int[] readLocation() throws IOException {
+            return new int[] { input.readInt(), input.readInt(), input.readInt(), input.readInt() };
+        }
+
+        private <R extends Rule> R setLocation(R rule, int[] location) {
+            rule.setLocation(
+                location[0] >= 0 ? stream : null,
+                location[0],
+                location[1],
+                location[2],
+                location[3]);
+
+            return rule;
+        }
+
+        private List<Node> readNodes() throws IOException {
+            int size = input.readInt();
+            List<Node> nodes = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                nodes.add(readNode());
+            }
+
+            return nodes;
+        }
+
+        private List<Filter> readFilters() throws IOException {
+            int size = input.readInt();
+            List<Filter> filters = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                byte type = input.readByte();
+
+                switch (type) {
+                    case COMPARISON_FILTER:
+                        String operator = readString();
+                        String key = readString();
+
+                        filters.add(new ComparisonFilter(operator, key, readNode()));
+                        break;
+
+                    case AND_FILTER:
+                        filters.add(new AndFilter(readFilters()));
+                        break;
+
+                    case OR_FILTER:
+                        filters.add(new OrFilter(readFilters()));
+                        break;
+
+                    default:
+                        throw new IOException(String.format("Unknown filter type: %s", type));
+                }
+            }
+
+            return filters;
+        }
+
+        public Node readNode() throws IOException {
+            return readNode(false);
+        }
+
+        // Keys are interned the same way as when they're parsed.
+        private Node readNode(boolean symbol) throws IOException {
+            byte type = input.readByte();
+
+            if (type == NULL) {
+                return null;
+            }
+
+            int[] location = readLocation();
+
+            switch (type) {
+                case FILE:
+                    return setLocation(new FileNode(readNodes()), location);
+
+                case PAIR:
+                    Node key = readNode(true);
+
+                    return setLocation(new PairNode(key, readNode()), location);
+
+                case DIRECTIVE:
+                    return setLocation(readDirective(), location);
+
+                case KEY_BLOCK:
+                    String blockKey = readString();
+                    Node blockName = readNode();
+
+                    return setLocation(new KeyBlockNode(blockKey, blockName, readNodes()), location);
+
+                case RESOURCE:
+                    String resourceType = readString();
+                    Node resourceName = readNode();
+
+                    return setLocation(new ResourceNode(resourceType, resourceName, readNodes()), location);
+
+                case BINARY:
+                    String operator = readString();
+                    Node left = readNode();
+
+                    return setLocation(new BinaryNode(operator, left, readNode()), location);
+
+                case INDEXED:
+                    Node value = readNode();
+
+                    return setLocation(new IndexedNode(value, readNodes()), location);
+
+                case INTERPOLATED_STRING:
+                    return setLocation(new InterpolatedStringNode(readNodes()), location);
+
+                case LIST:
+                    return setLocation(new ListNode(readNodes()), location);
+
+                case MAP:
+                    List<PairNode> entries = new ArrayList<>();
+
+                    for (Node entry : readNodes()) {
+                        entries.add((PairNode) entry);
+                    }
+
+                    return setLocation(new MapNode(entries), location);
+
+                case REFERENCE:
+                    List<Node> arguments = readNodes();
+
+                    return setLocation(new ReferenceNode(arguments, readFilters()), location);
+
+                case VALUE:
+                    return setLocation(new ValueNode(readValue(symbol)), location);
+
+                default:
+                    throw new IOException(String.format("Unknown node type: %s", type));
+            }
+        }
+
+        private DirectiveNode readDirective() throws IOException {
+            String name = readString();
+            List<Node> arguments = readNodes();
+            int optionsSize = input.readInt();
+            List<DirectiveOption> options = new ArrayList<>(optionsSize);
+
+            for (int i = 0; i < optionsSize; i++) {
+                int[] location = readLocation();
+                String optionName = readString();
+
+                options.add(setLocation(new DirectiveOption(optionName, readNodes()), location));
+            }
+
+            List<Node> body = readNodes();
+            int sectionsSize = input.readInt();
+            List<DirectiveSection> sections = new ArrayList<>(sectionsSize);
+
+            for (int i = 0; i < sectionsSize; i++) {
+                int[] location = readLocation();
+                String sectionName = readString();
+                List<Node> sectionArguments = readNodes();
+
+                sections.add(setLocation(new DirectiveSection(sectionName, sectionArguments, readNodes()), location));
+            }
+
+            return new DirectiveNode(name, arguments, options, body, sections);
+        }
+
+        private Object readValue(boolean symbol) throws IOException {
+            byte type = input.readByte();
+
+            switch (type) {
+                case STRING:
+                    String string = readString();
+
+                    return symbol ? Symbols.intern(string) : string;
+
+                case BOOLEAN:
+                    return input.readBoolean();
+
+                case LONG:
+                    return input.readLong();
+
+                case DOUBLE:
+                    return input.readDouble();
+
+                default:
+                    throw new IOException(String.format("Unknown value type: %s", type));
+            }
+        }
+
+    }
+
+}
@@ -21,62 +21,79 @@ import gyro.lang.Locatable;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
+// Only keeps the line and column numbers instead of the tokens, so that the lexer, the parser and the tokens can be
+// collected as soon as the nodes are created.
 public abstract class Rule implements Locatable {
 
-    protected final Token start;
-    protected final Token stop;
+    private GyroCharStream stream;
+    private int startLine = -1;
+    private int startColumn = -1;
+    private int stopLine = -1;
+    private int stopColumn = -1;
 
     public Rule(Token start, Token stop) {
-        this.start = start;
-        this.stop = stop;
+        setLocation(start, stop);
     }
 
     public Rule(ParserRuleContext context) {
         if (context != null) {
-            start = context.getStart();
-            stop = context.getStop();
+            setLocation(context.getStart(), context.getStop());
+        }
+    }
 
-        } else {
-            start = null;
-            stop = null;
+    private void setLocation(Token start, Token stop) {
+        if (start != null) {
+            stream = (GyroCharStream) start.getInputStream();
+            startLine = start.getLine() - 1;
+            startColumn = start.getCharPositionInLine();
+        }
+
+        if (stop != null) {
+            int column = stop.getCharPositionInLine();
+            int startIndex = stop.getStartIndex();
+            int stopIndex = stop.getStopIndex();
+
+            if (startIndex >= 0 && stopIndex >= 0 && stopIndex > startIndex) {
+                column += stopIndex - startIndex;
+            }
+
+            stopLine = stop.getLine() - 1;
+            stopColumn = column;
         }
     }
 
+    // For restoring the location of a rule that was read from the AST cache instead of being parsed.
+    void setLocation(GyroCharStream stream, int startLine, int startColumn, int stopLine, int stopColumn) {
+        this.stream = stream;
+        this.startLine = startLine;
+        this.startColumn = startColumn;
+        this.stopLine = stopLine;
+        this.stopColumn = stopColumn;
+    }
+
     @Override
     public GyroCharStream getStream() {
-        return start != null ? (GyroCharStream) start.getTokenSource().getInputStream() : null;
+        return stream;
     }
 
     @Override
     public int getStartLine() {
-        return start != null ? start.getLine() - 1 : -1;
+        return startLine;
     }
 
     @Override
     public int getStartColumn() {
-        return start != null ? start.getCharPositionInLine() : -1;
+        return startColumn;
     }
 
     @Override
     public int getStopLine() {
-        return stop != null ? stop.getLine() - 1 : -1;
+        return stopLine;
     }
 
     @Override
     public int getStopColumn() {
-        if (stop == null) {
-            return -1;
-        }
-
-        int column = stop.getCharPositionInLine();
-        int startIndex = stop.getStartIndex();
-        int stopIndex = stop.getStopIndex();
-
-        if (startIndex >= 0 && stopIndex >= 0 && stopIndex > startIndex) {
-            column += stopIndex - startIndex;
-        }
-
-        return column;
+        return stopColumn;
     }
 
 }
@@ -20,6 +20,7 @@ import java.util.List;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import gyro.lang.Symbols;
 import gyro.lang.ast.Node;
 import gyro.lang.ast.NodeVisitor;
 import gyro.parser.antlr4.GyroParser;
@@ -41,7 +42,7 @@ public class DirectiveNode extends BlockNode {
 
         super(null, body);
 
-        this.name = Preconditions.checkNotNull(name);
+        this.name = Symbols.intern(Preconditions.checkNotNull(name));
         this.arguments = ImmutableList.copyOf(Preconditions.checkNotNull(arguments));
         this.options = ImmutableList.copyOf(Preconditions.checkNotNull(options));
         this.sections = ImmutableList.copyOf(Preconditions.checkNotNull(sections));
@@ -50,7 +51,7 @@ public class DirectiveNode extends BlockNode {
     public DirectiveNode(GyroParser.DirectiveContext context) {
         super(Preconditions.checkNotNull(context), Node.create(context.body()));
 
-        this.name = context.directiveType().getText();
+        this.name = Symbols.intern(context.directiveType().getText());
         this.arguments = Node.create(context.arguments());
 
         this.options = context.option()
@@ -20,6 +20,7 @@ import java.util.List;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import gyro.lang.Symbols;
 import gyro.lang.ast.Node;
 import gyro.lang.ast.Rule;
 import gyro.parser.antlr4.GyroParser;
@@ -32,14 +33,14 @@ public class DirectiveOption extends Rule {
     public DirectiveOption(String name, List<Node> arguments) {
         super(null);
 
-        this.name = Preconditions.checkNotNull(name);
+        this.name = Symbols.intern(Preconditions.checkNotNull(name));
         this.arguments = ImmutableList.copyOf(Preconditions.checkNotNull(arguments));
     }
 
     public DirectiveOption(GyroParser.OptionContext context) {
         super(Preconditions.checkNotNull(context));
 
-        this.name = context.IDENTIFIER().getText();
+        this.name = Symbols.intern(context.IDENTIFIER().getText());
         this.arguments = Node.create(context.arguments());
     }
 
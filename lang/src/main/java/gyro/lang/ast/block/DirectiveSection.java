@@ -20,6 +20,7 @@ import java.util.List;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import gyro.lang.Symbols;
 import gyro.lang.ast.Node;
 import gyro.lang.ast.Rule;
 import gyro.parser.antlr4.GyroParser;
@@ -33,7 +34,7 @@ public class DirectiveSection extends Rule {
     public DirectiveSection(String name, List<Node> arguments, List<Node> body) {
         super(null);
 
-        this.name = Preconditions.checkNotNull(name);
+        this.name = Symbols.intern(Preconditions.checkNotNull(name));
         this.arguments = ImmutableList.copyOf(Preconditions.checkNotNull(arguments));
         this.body = ImmutableList.copyOf(Preconditions.checkNotNull(body));
     }
@@ -43,7 +44,7 @@ public class DirectiveSection extends Rule {
 
         GyroParser.OptionContext optionContext = context.option();
 
-        this.name = optionContext.IDENTIFIER().getText();
+        this.name = Symbols.intern(optionContext.IDENTIFIER().getText());
         this.arguments = Node.create(optionContext.arguments());
         this.body = Node.create(context.body());
     }
@@ -16,6 +16,8 @@
 
 package gyro.lang.ast.block;
 
+import java.util.List;
+
 import com.google.common.base.Preconditions;
 import gyro.lang.ast.Node;
 import gyro.lang.ast.NodeVisitor;
@@ -23,6 +25,10 @@ import gyro.parser.antlr4.GyroParser;
 
 public class FileNode extends BlockNode {
 
+    public FileNode(List<Node> body) {
+        super(null, body);
+    }
+
     public FileNode(GyroParser.FileContext context) {
         super(Preconditions.checkNotNull(context), Node.create(context.statement()));
     }
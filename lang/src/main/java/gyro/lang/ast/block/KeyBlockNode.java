@@ -20,6 +20,7 @@ import java.util.List;
 import java.util.Optional;
 
 import com.google.common.base.Preconditions;
+import gyro.lang.Symbols;
 import gyro.lang.ast.Node;
 import gyro.lang.ast.NodeVisitor;
 import gyro.parser.antlr4.GyroParser;
@@ -32,14 +33,14 @@ public class KeyBlockNode extends BlockNode {
     public KeyBlockNode(String key, Node name, List<Node> body) {
         super(null, body);
 
-        this.key = Preconditions.checkNotNull(key);
+        this.key = Symbols.intern(Preconditions.checkNotNull(key));
         this.name = name;
     }
 
     public KeyBlockNode(GyroParser.KeyBlockContext context) {
         super(Preconditions.checkNotNull(context), Node.create(context.body()));
 
-        this.key = context.IDENTIFIER().getText();
+        this.key = Symbols.intern(context.IDENTIFIER().getText());
         this.name = Optional.ofNullable(context.name()).map(Node::create).orElse(null);
     }
 
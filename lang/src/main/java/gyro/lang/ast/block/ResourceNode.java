@@ -19,6 +19,7 @@ package gyro.lang.ast.block;
 import java.util.List;
 
 import com.google.common.base.Preconditions;
+import gyro.lang.Symbols;
 import gyro.lang.ast.Node;
 import gyro.lang.ast.NodeVisitor;
 import gyro.parser.antlr4.GyroParser;
@@ -31,14 +32,14 @@ public class ResourceNode extends BlockNode {
     public ResourceNode(String type, Node name, List<Node> body) {
         super(null, body);
 
-        this.type = Preconditions.checkNotNull(type);
+        this.type = Symbols.intern(Preconditions.checkNotNull(type));
         this.name = Preconditions.checkNotNull(name);
     }
 
     public ResourceNode(GyroParser.ResourceContext context) {
         super(Preconditions.checkNotNull(context), Node.create(context.body()));
 
-        this.type = context.type().getText();
+        this.type = Symbols.intern(context.type().getText());
         this.name = Node.create(context.name());
     }
 
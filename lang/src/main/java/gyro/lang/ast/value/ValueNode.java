@@ -21,6 +21,7 @@ import java.util.Map;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import gyro.lang.EscapeException;
+import gyro.lang.Symbols;
 import gyro.lang.ast.Node;
 import gyro.lang.ast.NodeVisitor;
 import gyro.parser.antlr4.GyroParser;
@@ -81,19 +82,19 @@ public class ValueNode extends Node {
     public ValueNode(GyroParser.TypeContext context) {
         super(Preconditions.checkNotNull(context));
 
-        this.value = context.getText();
+        this.value = Symbols.intern(context.getText());
     }
 
     public ValueNode(GyroParser.WordContext context) {
         super(Preconditions.checkNotNull(context));
 
-        this.value = context.getText();
+        this.value = Symbols.intern(context.getText());
     }
 
     public ValueNode(TerminalNode context) {
         super(context.getSymbol(), context.getSymbol());
 
-        this.value = context.getText();
+        this.value = Symbols.intern(context.getText());
     }
 
     public Object getValue() {
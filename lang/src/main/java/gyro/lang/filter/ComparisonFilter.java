@@ -16,6 +16,8 @@
 
 package gyro.lang.filter;
 
+import com.google.common.base.Preconditions;
+import gyro.lang.Symbols;
 import gyro.lang.ast.Node;
 import gyro.parser.antlr4.GyroParser;
 
@@ -28,9 +30,15 @@ public class ComparisonFilter extends Filter {
     public static final String EQUALS_OPERATOR = "=";
     public static final String NOT_EQUALS_OPERATOR = "!=";
 
+    public ComparisonFilter(String operator, String key, Node value) {
+        this.operator = Preconditions.checkNotNull(operator);
+        this.key = Symbols.intern(Preconditions.checkNotNull(key));
+        this.value = Preconditions.checkNotNull(value);
+    }
+
     public ComparisonFilter(GyroParser.ComparisonFilterContext context) {
         this.operator = context.relOp().getText();
-        this.key = context.IDENTIFIER().getText();
+        this.key = Symbols.intern(context.IDENTIFIER().getText());
         this.value = Node.create(context.value());
     }
 
@@ -18,9 +18,11 @@ package gyro.lang;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
 import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -41,6 +43,7 @@ class GyroCharStreamTest {
             assertThat(stream.getLineText(1)).isEqualTo("bar");
             assertThat(stream.getLineText(2)).isEqualTo("qux");
             assertThat(stream.getLineText(3)).isEqualTo("xyzzy");
+            assertThat(stream.getLineText(4)).isNull();
         }
 
     }
@@ -60,6 +63,44 @@ class GyroCharStreamTest {
 
     }
 
+    @Nested
+    class WithByteBuffer extends Base {
+
+        @BeforeEach
+        void beforeEach() {
+            stream = new GyroCharStream(ByteBuffer.wrap(TEXT.getBytes(StandardCharsets.UTF_8)), "foo");
+        }
+
+        @Test
+        void getText() {
+            assertThat(stream.getText(Interval.of(0, stream.size() - 1))).isEqualTo("foo\nbar\nqux\nxyzzy");
+        }
+
+        @Test
+        void release() {
+            stream.release();
+
+            assertThat(stream.getLineText(3)).isEqualTo("xyzzy");
+            assertThat(stream.size()).isEqualTo(18);
+        }
+
+    }
+
+    @Nested
+    class WithSource extends Base {
+
+        @BeforeEach
+        void beforeEach() {
+            stream = new GyroCharStream("foo", () -> ByteBuffer.wrap(TEXT.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        @Test
+        void getSourceName() {
+            assertThat(stream.getSourceName()).isEqualTo("foo");
+        }
+
+    }
+
     @Nested
     class WithString extends Base {
 
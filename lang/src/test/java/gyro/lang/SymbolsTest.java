@@ -0,0 +1,51 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.lang;
+
+import gyro.lang.ast.Node;
+import gyro.lang.ast.PairNode;
+import gyro.lang.ast.block.FileNode;
+import gyro.lang.ast.value.ValueNode;
+import gyro.parser.antlr4.GyroParser;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class SymbolsTest {
+
+    @Test
+    void internNull() {
+        assertThat(Symbols.intern(null)).isNull();
+    }
+
+    @Test
+    void intern() {
+        String symbol = Symbols.intern(new String("foo"));
+
+        assertThat(Symbols.intern(new String("foo"))).isSameAs(symbol);
+    }
+
+    @Test
+    void internParsedKeys() {
+        FileNode node = (FileNode) Node.parse("foo: 'bar'\nfoo: 'qux'\n", GyroParser::file);
+        Object first = ((ValueNode) ((PairNode) node.getBody().get(0)).getKey()).getValue();
+        Object second = ((ValueNode) ((PairNode) node.getBody().get(1)).getKey()).getValue();
+
+        assertThat(first).isSameAs(second);
+    }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.lang;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class SyntaxErrorsExceptionTest {
+
+    @Test
+    void constructorNullExceptions() {
+        assertThatExceptionOfType(NullPointerException.class)
+            .isThrownBy(() -> new SyntaxErrorsException(null));
+    }
+
+    @Test
+    void getExceptions() {
+        List<SyntaxErrorException> exceptions = Arrays.asList(
+            new SyntaxErrorException("foo", new ArrayList<>()),
+            new SyntaxErrorException("bar", new ArrayList<>()));
+
+        SyntaxErrorsException exception = new SyntaxErrorsException(exceptions);
+
+        assertThat(exception.getExceptions()).isEqualTo(exceptions);
+        assertThat(exception.getExceptions()).isNotSameAs(exceptions);
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.lang.ast;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import gyro.lang.GyroCharStream;
+import gyro.lang.SyntaxError;
+import gyro.lang.SyntaxErrorException;
+import gyro.lang.ast.block.FileNode;
+import gyro.parser.antlr4.GyroParser;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.RuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class NodeParseTest {
+
+    @Test
+    void parse() {
+        Node node = Node.parse("foo: 'bar'\nlist: [1, 2]\n", GyroParser::file);
+
+        assertThat(node).isInstanceOf(FileNode.class);
+        assertThat(((FileNode) node).getBody()).hasSize(2);
+    }
+
+    @Test
+    void parseInvalid() {
+        assertThatExceptionOfType(SyntaxErrorException.class)
+            .isThrownBy(() -> Node.parse("foo: 'bar'\nlist: [1, 2\n", GyroParser::file))
+            .satisfies(e -> {
+                assertThat(e.getErrors()).isNotEmpty();
+
+                SyntaxError error = e.getErrors().get(0);
+
+                assertThat(error.getStartLine()).isGreaterThanOrEqualTo(1);
+            });
+    }
+
+    @Test
+    void parseAgainAfterInvalid() {
+        assertThatExceptionOfType(SyntaxErrorException.class)
+            .isThrownBy(() -> Node.parse("list: [", GyroParser::file));
+
+        assertThat(Node.parse("list: [1]", GyroParser::file)).isInstanceOf(FileNode.class);
+    }
+
+    // The nodes only keep the line and column numbers and the char stream, so that the lexer, the parser and the
+    // tokens can be collected as soon as the nodes are created.
+    @Test
+    void retainsNoParserObjects() throws IllegalAccessException {
+        String text = "test::resource foo\n    list: [1, 2]\n    map: { a: $(b) }\nend\n"
+            + "@for x -in [1]\n    y: $(x)\n@end\n";
+
+        GyroCharStream stream = new GyroCharStream(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), "test.gyro");
+        Set<Object> reachable = findReachable(Node.parse(stream, GyroParser::file));
+
+        assertThat(reachable).contains(stream);
+
+        assertThat(reachable).noneMatch(o -> o instanceof Token
+            || o instanceof RuleContext
+            || o instanceof Recognizer
+            || o instanceof TokenStream);
+    }
+
+    // The bytes are read again from the source when the text is needed after parsing, so that they can be collected.
+    @Test
+    void retainsNoBytes() throws IllegalAccessException {
+        String text = "foo: 'bar'\nlist: [1, 2]\n";
+        ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+
+        GyroCharStream stream = new GyroCharStream(
+            bytes,
+            "test.gyro",
+            () -> ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+
+        Set<Object> reachable = findReachable(Node.parse(stream, GyroParser::file));
+
+        assertThat(reachable).contains(stream);
+        assertThat(reachable.contains(bytes)).isFalse();
+        assertThat(reachable.contains(bytes.array())).isFalse();
+        assertThat(stream.getLineText(1)).isEqualTo("list: [1, 2]");
+    }
+
+    // Follows the fields of everything outside the JDK, and the items in the JDK collections and arrays.
+    private Set<Object> findReachable(Object root) throws IllegalAccessException {
+        Set<Object> reachable = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Object> queue = new ArrayDeque<>();
+
+        queue.add(root);
+
+        while (!queue.isEmpty()) {
+            Object object = queue.remove();
+
+            if (!reachable.add(object)) {
+                continue;
+            }
+
+            if (object instanceof Collection) {
+                ((Collection<?>) object).stream().filter(Objects::nonNull).forEach(queue::add);
+
+            } else if (object instanceof Map) {
+                ((Map<?, ?>) object).keySet().stream().filter(Objects::nonNull).forEach(queue::add);
+                ((Map<?, ?>) object).values().stream().filter(Objects::nonNull).forEach(queue::add);
+
+            } else if (object instanceof Object[]) {
+                Arrays.stream((Object[]) object).filter(Objects::nonNull).forEach(queue::add);
+
+            } else if (object.getClass().getClassLoader() != null) {
+                for (Class<?> c = object.getClass(); c != null; c = c.getSuperclass()) {
+                    for (Field field : c.getDeclaredFields()) {
+                        if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) {
+                            continue;
+                        }
+
+                        field.setAccessible(true);
+
+                        Object value = field.get(object);
+
+                        if (value != null) {
+                            queue.add(value);
+                        }
+                    }
+                }
+            }
+        }
+
+        return reachable;
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.lang.ast;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import gyro.lang.GyroCharStream;
+import gyro.lang.ast.block.FileNode;
+import gyro.parser.antlr4.GyroParser;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class NodeSerializerTest {
+
+    static final String TEXT = "foo: 'bar'\n"
+        + "list: [1, 2.5, true, \"a$(b)c\"]\n"
+        + "map: { x: 1 + 2, y: $(z).0 }\n"
+        + "@for x in [1, 2] -parallel true\n"
+        + "    @print: $x\n"
+        + "@end\n"
+        + "@if $foo = 'bar'\n"
+        + "    a: 1\n"
+        + "-else\n"
+        + "    a: 2\n"
+        + "@end\n"
+        + "aws::instance foo\n"
+        + "    key: $(aws::instance foo | name = 'foo' and size = 1)\n"
+        + "    block\n"
+        + "        x: 1\n"
+        + "    end\n"
+        + "end\n";
+
+    @Test
+    void roundTrip() throws IOException {
+        FileNode node = parse();
+        FileNode read = roundTrip(node, new GyroCharStream(TEXT));
+
+        assertThat(read).isNotNull();
+        assertThat(read.toString()).isEqualTo(node.toString());
+    }
+
+    @Test
+    void roundTripLocation() throws IOException {
+        FileNode node = parse();
+        Node pair = node.getBody().get(1);
+        Node readPair = roundTrip(node, new GyroCharStream(TEXT)).getBody().get(1);
+
+        assertThat(readPair.getStartLine()).isEqualTo(pair.getStartLine());
+        assertThat(readPair.getStartColumn()).isEqualTo(pair.getStartColumn());
+        assertThat(readPair.getStopLine()).isEqualTo(pair.getStopLine());
+        assertThat(readPair.getStopColumn()).isEqualTo(pair.getStopColumn());
+        assertThat(readPair.toCodeSnippet()).isEqualTo(pair.toCodeSnippet());
+    }
+
+    @Test
+    void readLazily() throws IOException {
+        boolean[] opened = new boolean[1];
+
+        FileNode read = roundTrip(parse(), new GyroCharStream("test.gyro", () -> {
+            opened[0] = true;
+            return ByteBuffer.wrap(TEXT.getBytes(StandardCharsets.UTF_8));
+        }));
+
+        assertThat(opened[0]).isFalse();
+        assertThat(read.getBody().get(0).getFile()).isEqualTo("test.gyro");
+        assertThat(opened[0]).isFalse();
+        assertThat(read.getBody().get(0).toCodeSnippet()).contains("foo: 'bar'");
+        assertThat(opened[0]).isTrue();
+    }
+
+    @Test
+    void readOtherVersion() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        NodeSerializer.write(parse(), output);
+
+        byte[] bytes = output.toByteArray();
+
+        bytes[7] ^= 1;
+
+        assertThat(NodeSerializer.read(new ByteArrayInputStream(bytes), new GyroCharStream(TEXT))).isNull();
+    }
+
+    FileNode parse() {
+        return (FileNode) Node.parse(TEXT, GyroParser::file);
+    }
+
+    FileNode roundTrip(FileNode node, GyroCharStream stream) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        NodeSerializer.write(node, output);
+        return NodeSerializer.read(new ByteArrayInputStream(output.toByteArray()), stream);
+    }
+
+}
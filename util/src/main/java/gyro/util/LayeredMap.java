@@ -0,0 +1,320 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * View of a few maps layered on top of each other, where the earlier layers hide the same keys in the later ones.
+ *
+ * <p>The layers are shared instead of copied, so lookups go through each layer at most once, and iterating never
+ * creates a combined map. Writes go to the first layer, and removes go to all of them, so that the key is gone from
+ * the view afterwards, unless the view is an {@link #overlay}.</p>
+ */
+public class LayeredMap<K, V> extends AbstractMap<K, V> {
+
+    private final Map<K, V>[] layers;
+
+    // Keys removed from an overlay that are still in the later layers, or null if removes go to all the layers.
+    private final Set<Object> removed;
+
+    @SafeVarargs
+    public LayeredMap(Map<K, V>... layers) {
+        this(false, layers);
+    }
+
+    @SuppressWarnings("unchecked")
+    private LayeredMap(boolean overlay, Map<K, V>[] layers) {
+        if (layers == null || layers.length == 0) {
+            this.layers = new Map[] { new LinkedHashMap<>() };
+
+        } else {
+            for (Map<K, V> layer : layers) {
+                Preconditions.checkNotNull(layer);
+            }
+
+            this.layers = Arrays.copyOf(layers, layers.length);
+        }
+
+        this.removed = overlay ? new HashSet<>() : null;
+    }
+
+    /**
+     * Creates a view of the given {@code top} layer over the {@code bottom} ones that only ever changes the top layer,
+     * e.g. because the bottom ones are shared or unmodifiable. Removing a key that's in the bottom layers only hides
+     * it there until it's put again.
+     *
+     * @param top Nonnull.
+     * @param bottom Nonnull.
+     */
+    @SafeVarargs
+    @SuppressWarnings("unchecked")
+    public static <K, V> LayeredMap<K, V> overlay(Map<K, V> top, Map<K, V>... bottom) {
+        Preconditions.checkNotNull(bottom);
+
+        Map<K, V>[] layers = new Map[bottom.length + 1];
+
+        layers[0] = top;
+        System.arraycopy(bottom, 0, layers, 1, bottom.length);
+        return new LayeredMap<>(true, layers);
+    }
+
+    private boolean isRemoved(Object key, int layerIndex) {
+        return layerIndex > 0 && removed != null && removed.contains(key);
+    }
+
+    // Hides the given key in the later layers of an overlay if they contain it.
+    private void hide(Object key) {
+        for (int i = 1, length = layers.length; i < length; i++) {
+            if (layers[i].containsKey(key)) {
+                removed.add(key);
+                return;
+            }
+        }
+    }
+
+    // Index of the first layer that contains the given key, or -1.
+    private int indexOf(Object key) {
+        for (int i = 0, length = layers.length; i < length; i++) {
+            if (layers[i].containsKey(key)) {
+                return isRemoved(key, i) ? -1 : i;
+            }
+        }
+
+        return -1;
+    }
+
+    private boolean isHidden(Object key, int layerIndex) {
+        for (int i = 0; i < layerIndex; i++) {
+            if (layers[i].containsKey(key)) {
+                return true;
+            }
+        }
+
+        return isRemoved(key, layerIndex);
+    }
+
+    @Override
+    public void clear() {
+        if (removed != null) {
+            for (int i = 1, length = layers.length; i < length; i++) {
+                removed.addAll(layers[i].keySet());
+            }
+
+            layers[0].clear();
+
+        } else {
+            for (Map<K, V> layer : layers) {
+                layer.clear();
+            }
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public V get(Object key) {
+        for (int i = 0, length = layers.length; i < length; i++) {
+            Map<K, V> layer = layers[i];
+            V value = layer.get(key);
+
+            if (value != null || layer.containsKey(key)) {
+                return isRemoved(key, i) ? null : value;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        if (removed != null) {
+            return !new EntryIterator().hasNext();
+        }
+
+        for (Map<K, V> layer : layers) {
+            if (!layer.isEmpty()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        V oldValue = get(key);
+
+        if (removed != null) {
+            removed.remove(key);
+        }
+
+        layers[0].put(key, value);
+        return oldValue;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        if (removed != null) {
+            removed.removeAll(map.keySet());
+        }
+
+        layers[0].putAll(map);
+    }
+
+    @Override
+    public V remove(Object key) {
+        V oldValue = get(key);
+
+        if (removed != null) {
+            layers[0].remove(key);
+            hide(key);
+
+        } else {
+            for (Map<K, V> layer : layers) {
+                layer.remove(key);
+            }
+        }
+
+        return oldValue;
+    }
+
+    @Override
+    public int size() {
+        if (layers.length == 1) {
+            return layers[0].size();
+        }
+
+        int size = 0;
+
+        for (int i = 0, length = layers.length; i < length; i++) {
+            for (K key : layers[i].keySet()) {
+                if (!isHidden(key, i)) {
+                    ++size;
+                }
+            }
+        }
+
+        return size;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return LayeredMap.this.size();
+            }
+        };
+    }
+
+    private class EntryIterator implements Iterator<Entry<K, V>> {
+
+        private int layerIndex;
+        private Iterator<Entry<K, V>> layerIterator = layers[0].entrySet().iterator();
+        private Entry<K, V> next;
+        private Entry<K, V> last;
+        private int lastLayerIndex;
+        private boolean advanced;
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                advanced = true;
+
+                if (layerIterator.hasNext()) {
+                    Entry<K, V> entry = layerIterator.next();
+
+                    if (!isHidden(entry.getKey(), layerIndex)) {
+                        next = entry;
+                    }
+
+                } else if (layerIndex + 1 < layers.length) {
+                    ++layerIndex;
+                    layerIterator = layers[layerIndex].entrySet().iterator();
+
+                } else {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            last = next;
+            lastLayerIndex = layerIndex;
+            next = null;
+            advanced = false;
+            return last;
+        }
+
+        // Only right after next, since the layer iterator is past the last entry once hasNext looks for another one.
+        @Override
+        public void remove() {
+            if (last == null || advanced) {
+                throw new IllegalStateException();
+            }
+
+            K key = last.getKey();
+
+            if (removed != null) {
+                if (lastLayerIndex == 0) {
+                    layerIterator.remove();
+                }
+
+                hide(key);
+
+            } else {
+                layerIterator.remove();
+
+                // Earlier layers can't contain the key since it wasn't hidden.
+                for (int i = lastLayerIndex + 1, length = layers.length; i < length; i++) {
+                    layers[i].remove(key);
+                }
+            }
+
+            last = null;
+        }
+
+    }
+
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.util;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LayeredMapTest {
+
+    @Test
+    void constructorNull() {
+        assertThatNullPointerException().isThrownBy(() -> new LayeredMap<>(new LinkedHashMap<>(), null));
+    }
+
+    @Test
+    void constructorEmpty() {
+        LayeredMap<String, Object> map = new LayeredMap<>();
+
+        map.put("foo", "bar");
+
+        assertThat(map).containsExactly(entry("foo", "bar"));
+    }
+
+    @Nested
+    class Layers {
+
+        Map<String, Object> parent;
+        Map<String, Object> values;
+        LayeredMap<String, Object> map;
+
+        @BeforeEach
+        void beforeEach() {
+            parent = new LinkedHashMap<>();
+            parent.put("a", 1);
+            parent.put("b", null);
+
+            values = new LinkedHashMap<>();
+            values.put("a", 2);
+            values.put("c", 3);
+
+            map = new LayeredMap<>(parent, values);
+        }
+
+        @Test
+        void get() {
+            assertThat(map.get("a")).isEqualTo(1);
+            assertThat(map.get("c")).isEqualTo(3);
+            assertThat(map.get("d")).isNull();
+        }
+
+        @Test
+        void containsKey() {
+            assertThat(map.containsKey("b")).isTrue();
+            assertThat(map.containsKey("c")).isTrue();
+            assertThat(map.containsKey("d")).isFalse();
+        }
+
+        @Test
+        void put() {
+            map.put("c", 4);
+
+            assertThat(map.get("c")).isEqualTo(4);
+            assertThat(parent).containsEntry("c", 4);
+            assertThat(values).containsEntry("c", 3);
+        }
+
+        @Test
+        void remove() {
+            map.remove("a");
+
+            assertThat(map.containsKey("a")).isFalse();
+            assertThat(parent).doesNotContainKey("a");
+            assertThat(values).doesNotContainKey("a");
+        }
+
+        @Test
+        void clear() {
+            map.clear();
+
+            assertThat(map).isEmpty();
+            assertThat(parent).isEmpty();
+            assertThat(values).isEmpty();
+        }
+
+        @Test
+        void size() {
+            assertThat(map.size()).isEqualTo(3);
+        }
+
+        @Test
+        void entrySet() {
+            assertThat(map.entrySet()).containsExactly(entry("a", 1), entry("b", null), entry("c", 3));
+        }
+
+        @Test
+        void equalsMap() {
+            Map<String, Object> expected = new HashMap<>();
+
+            expected.put("a", 1);
+            expected.put("b", null);
+            expected.put("c", 3);
+
+            assertThat(map).isEqualTo(expected);
+            assertThat(map.hashCode()).isEqualTo(expected.hashCode());
+        }
+
+        @Test
+        void iteratorRemove() {
+            Iterator<String> i = map.keySet().iterator();
+
+            while (i.hasNext()) {
+                if (i.next().equals("a")) {
+                    i.remove();
+                }
+            }
+
+            assertThat(map).containsOnlyKeys("b", "c");
+            assertThat(values).containsOnlyKeys("c");
+        }
+
+        @Test
+        void iteratorRemoveAfterHasNext() {
+            Iterator<String> i = map.keySet().iterator();
+
+            i.next();
+            i.hasNext();
+
+            assertThatIllegalStateException().isThrownBy(i::remove);
+        }
+
+        @Test
+        void layersNotCopied() {
+            values.put("d", 5);
+
+            assertThat(map.get("d")).isEqualTo(5);
+        }
+    }
+
+    @Nested
+    class Overlay {
+
+        Map<String, Object> top;
+        Map<String, Object> bottom;
+        LayeredMap<String, Object> map;
+
+        @BeforeEach
+        void beforeEach() {
+            top = new LinkedHashMap<>();
+            top.put("a", 1);
+
+            bottom = new LinkedHashMap<>();
+            bottom.put("a", 2);
+            bottom.put("b", 3);
+
+            map = LayeredMap.overlay(top, Collections.unmodifiableMap(bottom));
+        }
+
+        @Test
+        void remove() {
+            assertThat(map.remove("b")).isEqualTo(3);
+            assertThat(map.containsKey("b")).isFalse();
+            assertThat(map.get("b")).isNull();
+            assertThat(map).containsExactly(entry("a", 1));
+            assertThat(bottom).containsEntry("b", 3);
+        }
+
+        @Test
+        void removeShadowed() {
+            map.remove("a");
+
+            assertThat(map.containsKey("a")).isFalse();
+            assertThat(map.size()).isEqualTo(1);
+            assertThat(top).isEmpty();
+            assertThat(bottom).containsEntry("a", 2);
+        }
+
+        @Test
+        void putAfterRemove() {
+            map.remove("b");
+            map.put("b", 4);
+
+            assertThat(map.get("b")).isEqualTo(4);
+            assertThat(bottom).containsEntry("b", 3);
+        }
+
+        @Test
+        void clear() {
+            map.clear();
+
+            assertThat(map).isEmpty();
+            assertThat(map.size()).isZero();
+            assertThat(top).isEmpty();
+            assertThat(bottom).containsOnlyKeys("a", "b");
+        }
+
+        @Test
+        void iteratorRemove() {
+            Iterator<String> i = map.keySet().iterator();
+
+            while (i.hasNext()) {
+                i.next();
+                i.remove();
+            }
+
+            assertThat(map).isEmpty();
+            assertThat(top).isEmpty();
+            assertThat(bottom).containsOnlyKeys("a", "b");
+        }
+
+    }
+
+}